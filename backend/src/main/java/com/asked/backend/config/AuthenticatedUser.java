@@ -0,0 +1,23 @@
+package com.asked.backend.config;
+
+import org.springframework.security.core.userdetails.User;
+
+import java.util.ArrayList;
+
+/**
+ * Authentication principal carrying the user's database id, so handlers can
+ * scope queries by id without looking the user up again.
+ */
+public class AuthenticatedUser extends User {
+
+    private final Long id;
+
+    public AuthenticatedUser(Long id, String username, String password) {
+        super(username, password, new ArrayList<>());
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
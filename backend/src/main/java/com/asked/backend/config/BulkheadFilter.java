@@ -0,0 +1,144 @@
+package com.asked.backend.config;
+
+import com.asked.backend.service.Bulkhead;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-route-group bulkheads so slow AI calls cannot take every request
+ * thread away from login and flashcard browsing.
+ *
+ * Groups follow the matchers in {@link SecurityConfig}. Each has its own
+ * limits under {@code bulkhead.<group>.*} (max-concurrent, max-queue,
+ * max-wait-ms). A saturated group answers 503 with Retry-After; other
+ * groups are unaffected. Routes outside every group are not limited.
+ */
+@Component
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${bulkhead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bulkhead.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
+    // Pattern -> group, checked in insertion order
+    private final Map<String, Bulkhead> routes = new LinkedHashMap<>();
+
+    @PostConstruct
+    void init() {
+        Bulkhead auth = create("auth", 20, 50, 1000);
+        Bulkhead ai = create("ai", 100, 20, 500);
+        Bulkhead crud = create("crud", 60, 100, 1000);
+
+        register(SecurityConfig.AUTH_PATHS, auth);
+        register(SecurityConfig.AI_PATHS, ai);
+        register(SecurityConfig.JOB_PATHS, crud);
+        register(SecurityConfig.FILE_FLASHCARD_PATHS, crud);
+        register(SecurityConfig.DB_FLASHCARD_PATHS, crud);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Bulkhead bulkhead = bulkheadFor(request.getRequestURI().substring(request.getContextPath().length()));
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            reject(bulkhead, response);
+            return;
+        }
+
+        // Async requests (SSE) release here, once the handler has handed off
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    Bulkhead bulkheadFor(String path) {
+        for (Map.Entry<String, Bulkhead> route : routes.entrySet()) {
+            if (pathMatcher.match(route.getKey(), path)) {
+                return route.getValue();
+            }
+        }
+        return null;
+    }
+
+    private Bulkhead create(String group, int maxConcurrent, int maxQueue, long maxWaitMs) {
+        String prefix = "bulkhead." + group + ".";
+        return new Bulkhead(group,
+                environment.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                environment.getProperty(prefix + "max-queue", Integer.class, maxQueue),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, maxWaitMs),
+                meterRegistry);
+    }
+
+    private void register(String[] patterns, Bulkhead bulkhead) {
+        for (String pattern : patterns) {
+            routes.put(pattern, bulkhead);
+        }
+    }
+
+    private void reject(Bulkhead bulkhead, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json");
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Service busy");
+        errorResponse.put("message", "Too many concurrent " + bulkhead.getName() + " requests. Please try again later.");
+        errorResponse.put("retryAfterSeconds", retryAfterSeconds);
+        errorResponse.put("timestamp", System.currentTimeMillis());
+
+        mapper.writeValue(response.getWriter(), errorResponse);
+    }
+}
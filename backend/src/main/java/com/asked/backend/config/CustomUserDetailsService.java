@@ -2,29 +2,98 @@ package com.asked.backend.config;
 
 import com.asked.backend.model.User;
 import com.asked.backend.model.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Loads principals for JWT-authenticated requests. Lookups are cached per
+ * username for a short TTL so an authenticated request does not hit the
+ * users table; entries are evicted whenever a user row changes (see
+ * {@link UserPrincipalCacheListener}).
+ */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${auth.principal-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${auth.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, CachedPrincipal> cache = new ConcurrentHashMap<>();
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached = cache.get(username);
+        if (cached != null && cached.expiresAt > now) {
+            meterRegistry.counter("auth.principal_cache.requests", "result", "hit").increment();
+            return cached.toPrincipal();
+        }
+
+        meterRegistry.counter("auth.principal_cache.requests", "result", "miss").increment();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                new ArrayList<>()
-        );
+        if (cache.size() >= maxEntries) {
+            trim(now);
+        }
+        CachedPrincipal loaded = new CachedPrincipal(user.getId(), user.getUsername(), user.getPassword(), now + ttlMs);
+        cache.put(username, loaded);
+        return loaded.toPrincipal();
+    }
+
+    public void evict(String username) {
+        cache.remove(username);
+    }
+
+    /**
+     * Evicts by id, which also covers a username that has just been changed.
+     */
+    public void evict(Long userId) {
+        cache.values().removeIf(entry -> entry.id.equals(userId));
+    }
+
+    private void trim(long now) {
+        cache.values().removeIf(entry -> entry.expiresAt <= now);
+        Iterator<String> keys = cache.keySet().iterator();
+        while (cache.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static class CachedPrincipal {
+        private final Long id;
+        private final String username;
+        private final String password;
+        private final long expiresAt;
+
+        CachedPrincipal(Long id, String username, String password, long expiresAt) {
+            this.id = id;
+            this.username = username;
+            this.password = password;
+            this.expiresAt = expiresAt;
+        }
+
+        // A fresh object per request: Spring Security may erase credentials on the one it is given
+        AuthenticatedUser toPrincipal() {
+            return new AuthenticatedUser(id, username, password);
+        }
     }
-} 
\ No newline at end of file
+}
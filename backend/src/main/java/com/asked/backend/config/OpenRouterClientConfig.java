@@ -0,0 +1,139 @@
+package com.asked.backend.config;
+
+import com.asked.backend.utils.VirtualThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared HTTP client for all OpenRouter calls.
+ *
+ * One connection pool and dispatcher are reused for every AI request so that
+ * TLS sessions and HTTP/2 connections stay warm between calls.
+ */
+@Configuration
+public class OpenRouterClientConfig {
+
+    @Value("${openrouter.http.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${openrouter.http.read-timeout-ms:60000}")
+    private long readTimeoutMs;
+
+    @Value("${openrouter.http.write-timeout-ms:30000}")
+    private long writeTimeoutMs;
+
+    @Value("${openrouter.http.call-timeout-ms:120000}")
+    private long callTimeoutMs;
+
+    @Value("${openrouter.stream.call-timeout-ms:300000}")
+    private long streamCallTimeoutMs;
+
+    @Value("${openrouter.http.max-idle-connections:20}")
+    private int maxIdleConnections;
+
+    @Value("${openrouter.http.keep-alive-ms:300000}")
+    private long keepAliveMs;
+
+    @Value("${openrouter.http.max-requests:64}")
+    private int maxRequests;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean(destroyMethod = "evictAll")
+    public ConnectionPool openRouterConnectionPool(MeterRegistry meterRegistry) {
+        ConnectionPool pool = new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("openrouter.http.pool.connections", pool, ConnectionPool::connectionCount)
+                .description("Connections currently held by the OpenRouter pool")
+                .register(meterRegistry);
+        Gauge.builder("openrouter.http.pool.idle", pool, ConnectionPool::idleConnectionCount)
+                .description("Idle connections available for reuse")
+                .register(meterRegistry);
+
+        return pool;
+    }
+
+    @Bean
+    public OkHttpClient openRouterHttpClient(ConnectionPool openRouterConnectionPool, MeterRegistry meterRegistry) {
+        // Same shape as OkHttp's default executor; only the thread kind changes.
+        // Synchronous calls already run on the (virtual) request thread.
+        Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), VirtualThreads.threadFactory("openrouter-dispatch-", virtualThreads)));
+        dispatcher.setMaxRequests(maxRequests);
+        // Every call goes to the same host, so the per-host limit is the effective one
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(openRouterConnectionPool)
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .eventListener(new ConnectionMetricsListener(meterRegistry))
+                .build();
+    }
+
+    /**
+     * Same pool and dispatcher as {@link #openRouterHttpClient}, but with a longer
+     * overall call timeout because a streamed completion stays open for the whole
+     * generation. The read timeout still catches stalled streams.
+     */
+    @Bean
+    public OkHttpClient openRouterStreamingClient(@Qualifier("openRouterHttpClient") OkHttpClient openRouterHttpClient) {
+        return openRouterHttpClient.newBuilder()
+                .callTimeout(streamCallTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Counts connection acquisitions against fresh TCP connects.
+     * Reuse rate = 1 - (opened / acquired).
+     */
+    static class ConnectionMetricsListener extends EventListener {
+
+        private final Counter acquired;
+        private final Counter opened;
+
+        ConnectionMetricsListener(MeterRegistry meterRegistry) {
+            this.acquired = Counter.builder("openrouter.http.connections.acquired")
+                    .description("Connections handed to OpenRouter calls (new or pooled)")
+                    .register(meterRegistry);
+            this.opened = Counter.builder("openrouter.http.connections.opened")
+                    .description("New TCP connections opened to OpenRouter")
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            opened.increment();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            acquired.increment();
+        }
+    }
+}
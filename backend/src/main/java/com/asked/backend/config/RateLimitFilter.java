@@ -6,27 +6,70 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Applies {@link RateLimitService} limits. Runs after JWT authentication so
+ * signed-in users are limited per account (and get the user tier) however
+ * many addresses they come from; anonymous requests are limited per IP.
+ *
+ * The IP is the socket address unless {@code rate.limit.trusted-proxies} is
+ * set, in which case it is taken from X-Forwarded-For that many hops from
+ * the right: entries further left are written by the client and can be
+ * forged. The default of 1 matches the single proxy in front of the
+ * deployed service.
+ *
+ * The resolved client key and tier are left on the request for the AI token
+ * quota (see {@link #clientKey} and {@link #tier}), also when rate limiting
+ * itself is switched off.
+ */
 @Component
 public class RateLimitFilter extends OncePerRequestFilter {
 
+    public static final String CLIENT_KEY_ATTRIBUTE = RateLimitFilter.class.getName() + ".clientKey";
+    public static final String TIER_ATTRIBUTE = RateLimitFilter.class.getName() + ".tier";
+
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    static final String RESET_HEADER = "X-RateLimit-Reset";
+
+    private static final byte[] REJECTION_BODY =
+            "{\"error\":\"Rate limit exceeded\",\"message\":\"Too many requests. Please try again later.\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    // Header values for waits up to an hour, the longest window
+    private static final String[] SECONDS = new String[3601];
+
+    static {
+        for (int i = 0; i < SECONDS.length; i++) {
+            SECONDS[i] = Integer.toString(i);
+        }
+    }
+
     @Autowired
     private RateLimitService rateLimitService;
 
+    @Value("${rate.limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate.limit.trusted-proxies:1}")
+    private int trustedProxies;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
                                   HttpServletResponse response, 
                                   FilterChain filterChain) 
             throws ServletException, IOException {
         
-        String clientId = getClientId(request);
         String endpoint = request.getRequestURI();
         
         // Skip rate limiting for certain endpoints
@@ -35,35 +78,48 @@ public class RateLimitFilter extends OncePerRequestFilter {
             return;
         }
         
-        if (!rateLimitService.isAllowed(clientId, endpoint)) {
-            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setContentType("application/json");
-            
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "Rate limit exceeded");
-            errorResponse.put("message", "Too many requests. Please try again later.");
-            errorResponse.put("timestamp", System.currentTimeMillis());
-            
-            response.getWriter().write(convertMapToJson(errorResponse));
-            return;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String clientKey;
+        RateLimitService.Tier tier;
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            clientKey = "user:" + user.getId();
+            tier = RateLimitService.Tier.USER;
+        } else {
+            clientKey = "ip:" + getClientIp(request);
+            tier = RateLimitService.Tier.ANONYMOUS;
+        }
+        request.setAttribute(CLIENT_KEY_ATTRIBUTE, clientKey);
+        request.setAttribute(TIER_ATTRIBUTE, tier);
+        
+        if (enabled) {
+            long retryAfterNanos = rateLimitService.tryAcquire(clientKey, endpoint, tier);
+            if (retryAfterNanos > 0) {
+                writeRejection(response, retryAfterNanos);
+                return;
+            }
         }
         
         filterChain.doFilter(request, response);
     }
     
-    private String getClientId(HttpServletRequest request) {
-        // Use IP address as client identifier
+    /** Client key resolved for this request, or null if the filter did not run. */
+    public static String clientKey(HttpServletRequest request) {
+        return (String) request.getAttribute(CLIENT_KEY_ATTRIBUTE);
+    }
+
+    public static RateLimitService.Tier tier(HttpServletRequest request) {
+        return (RateLimitService.Tier) request.getAttribute(TIER_ATTRIBUTE);
+    }
+    
+    String getClientIp(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        if (trustedProxies <= 0 || xForwardedFor == null || xForwardedFor.isEmpty()) {
+            return request.getRemoteAddr();
         }
         
-        return request.getRemoteAddr();
+        // The entry appended by the outermost trusted proxy is the real client
+        String[] hops = xForwardedFor.split(",");
+        return hops[Math.max(0, hops.length - trustedProxies)].trim();
     }
     
     private boolean shouldSkipRateLimit(String endpoint) {
@@ -74,20 +130,25 @@ public class RateLimitFilter extends OncePerRequestFilter {
                endpoint.equals("/favicon.ico");
     }
     
-    private String convertMapToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            json.append("\"").append(entry.getKey()).append("\":\"")
-                .append(entry.getValue()).append("\"");
-            first = false;
-        }
-        
-        json.append("}");
-        return json.toString();
+    /**
+     * Writes the 429 for a rejected request. Under a flood this is the hot
+     * path, so the body is a constant byte array and header values come from
+     * a table; nothing is serialized per request.
+     */
+    static void writeRejection(HttpServletResponse response, long retryAfterNanos) throws IOException {
+        String seconds = seconds(retryAfterNanos);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, seconds);
+        response.setHeader(REMAINING_HEADER, "0");
+        response.setHeader(RESET_HEADER, seconds);
+        response.setContentLength(REJECTION_BODY.length);
+        response.getOutputStream().write(REJECTION_BODY);
+    }
+
+    // Whole seconds, rounded up, so a client that waits Retry-After is not rejected again
+    private static String seconds(long nanos) {
+        long seconds = Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+        return seconds < SECONDS.length ? SECONDS[(int) seconds] : Long.toString(seconds);
     }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.asked.backend.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -19,32 +20,43 @@ import java.util.Arrays;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Route groups, shared with BulkheadFilter so isolation follows the same boundaries
+    public static final String[] AUTH_PATHS = {"/auth/**"};
+    public static final String[] AI_PATHS = {"/ai/**", "/upload", "/extract"};
+    public static final String[] JOB_PATHS = {"/jobs/**"};
+    public static final String[] FILE_FLASHCARD_PATHS = {"/save-flashcards", "/list-flashcards", "/flashcards/view", "/flashcards/delete"};
+    public static final String[] DB_FLASHCARD_PATHS = {"/db/flashcards/**"};
+
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
     @Autowired
     private RateLimitFilter rateLimitFilter;
 
+    @Autowired
+    private BulkheadFilter bulkheadFilter;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .addFilterBefore(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Rate limiting keys on the authenticated user, so it runs after the JWT filter
+            .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class)
+            .addFilterAfter(bulkheadFilter, RateLimitFilter.class)
             .authorizeHttpRequests(auth -> auth
                 // Allow authentication endpoints
-                .requestMatchers("/auth/**").permitAll()
-                // Allow AI endpoints (for now, can be secured later)
-                .requestMatchers("/ai/**").permitAll()
-                // Allow upload endpoints (for now, can be secured later)
-                .requestMatchers("/upload").permitAll()
-                .requestMatchers("/extract").permitAll()
+                .requestMatchers(AUTH_PATHS).permitAll()
+                // Allow AI and upload endpoints (for now, can be secured later)
+                .requestMatchers(AI_PATHS).permitAll()
+                // Background job status (job ids are unguessable UUIDs)
+                .requestMatchers(JOB_PATHS).permitAll()
                 // Allow file-based flashcard endpoints (for now)
-                .requestMatchers("/save-flashcards", "/list-flashcards", "/flashcards/view", "/flashcards/delete").permitAll()
+                .requestMatchers(FILE_FLASHCARD_PATHS).permitAll()
                 // Secure database flashcard endpoints
-                .requestMatchers("/db/flashcards/**").authenticated()
+                .requestMatchers(DB_FLASHCARD_PATHS).authenticated()
                 // Allow all other requests for now (can be secured later)
                 .anyRequest().permitAll()
             );
@@ -62,14 +74,17 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
+        // Paging cursor for GET /db/flashcards; browsers hide other headers from scripts
+        configuration.setExposedHeaders(Arrays.asList("X-Next-Cursor"));
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
     }
 
+    // Cost of new hashes; raise it as hardware gets faster and logins upgrade old hashes
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 } 
\ No newline at end of file
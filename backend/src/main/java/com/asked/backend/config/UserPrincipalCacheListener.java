@@ -0,0 +1,50 @@
+package com.asked.backend.config;
+
+import com.asked.backend.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener on {@link User} that drops the cached principal whenever the
+ * row is updated or deleted, so password or username changes apply at once
+ * instead of after the cache TTL.
+ *
+ * The callbacks fire at flush, before the transaction commits; eviction is
+ * deferred until after commit, otherwise a concurrent request could reload
+ * the old row into the cache in between (or a rollback would have evicted
+ * for nothing). JPQL bulk updates such as
+ * {@code UserRepository#updatePasswordIfUnchanged} bypass entity listeners,
+ * so their callers evict explicitly.
+ */
+@Component
+public class UserPrincipalCacheListener {
+
+    // Lazy: entity listeners are created while the EntityManagerFactory is still being built
+    @Autowired
+    @Lazy
+    private CustomUserDetailsService userDetailsService;
+
+    @PostUpdate
+    @PostRemove
+    void evict(User user) {
+        Long id = user.getId();
+        if (id == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userDetailsService.evict(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userDetailsService.evict(id);
+            }
+        });
+    }
+}
@@ -1,16 +1,20 @@
 package com.asked.backend.controller;
 
+import com.asked.backend.config.CustomUserDetailsService;
 import com.asked.backend.dto.AuthResponse;
 import com.asked.backend.dto.LoginRequest;
 import com.asked.backend.dto.RegisterRequest;
 import com.asked.backend.dto.ValidationUtils;
+import com.asked.backend.exception.ServiceBusyException;
 import com.asked.backend.model.User;
 import com.asked.backend.model.UserRepository;
+import com.asked.backend.service.PasswordHashingService;
+import com.asked.backend.service.UserExistenceFilter;
 import com.asked.backend.utils.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -27,7 +31,14 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
 
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
@@ -59,35 +70,36 @@ public class AuthController {
             String sanitizedUsername = ValidationUtils.sanitizeText(request.getUsername());
             String sanitizedEmail = ValidationUtils.sanitizeText(request.getEmail());
             
-            // Check if username already exists
-            if (userRepository.existsByUsername(sanitizedUsername)) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("error", "Username already exists");
-                response.put("timestamp", System.currentTimeMillis());
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            // Check if email already exists
-            if (userRepository.existsByEmail(sanitizedEmail)) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("error", "Email already exists");
-                response.put("timestamp", System.currentTimeMillis());
-                return ResponseEntity.badRequest().body(response);
+            // The filter rules out most new names without a query; only possible clashes hit the table
+            if (userExistenceFilter.mightExist(sanitizedUsername, sanitizedEmail)) {
+                String conflict = findConflict(sanitizedUsername, sanitizedEmail);
+                if (conflict != null) {
+                    return conflictResponse(conflict);
+                }
             }
 
             // Create new user with encrypted password
             User user = new User(
                 sanitizedUsername,
                 sanitizedEmail,
-                passwordEncoder.encode(request.getPassword())
+                passwordHashingService.encode(request.getPassword())
             );
 
-            userRepository.save(user);
+            try {
+                userRepository.save(user);
+            } catch (DataIntegrityViolationException e) {
+                // Taken since the check (or missed by the filter): the unique constraints decide
+                String conflict = findConflict(sanitizedUsername, sanitizedEmail);
+                return conflictResponse(conflict != null ? conflict : "Username already exists");
+            }
+            userExistenceFilter.add(sanitizedUsername, sanitizedEmail);
 
             // Generate JWT token
             String token = jwtUtil.generateToken(user.getUsername());
 
             return ResponseEntity.ok(new AuthResponse(token, user.getUsername()));
+        } catch (ServiceBusyException e) {
+            throw e;
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("error", "Registration failed");
@@ -109,20 +121,51 @@ public class AuthController {
             }
 
             // Check password
-            if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+            if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
                 return ResponseEntity.badRequest().body("Invalid username or password");
             }
 
+            // Stored at an older cost: rehash in the background, the login does not wait
+            if (passwordHashingService.needsUpgrade(user.getPassword())) {
+                String oldHash = user.getPassword();
+                passwordHashingService.upgradeLater(request.getPassword(), hash -> {
+                    if (userRepository.updatePasswordIfUnchanged(user.getId(), oldHash, hash) > 0) {
+                        userDetailsService.evict(user.getId());
+                    }
+                });
+            }
+
             // Generate JWT token
             String token = jwtUtil.generateToken(user.getUsername());
 
             return ResponseEntity.ok(new AuthResponse(token, user.getUsername()));
+        } catch (ServiceBusyException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Login failed: " + e.getMessage());
         }
     }
 
+    // Error for whichever of the username and email is already taken, or null if neither
+    private String findConflict(String username, String email) {
+        String conflict = null;
+        for (UserRepository.Identity existing : userRepository.findTop2ByUsernameOrEmail(username, email)) {
+            if (username.equalsIgnoreCase(existing.getUsername())) {
+                return "Username already exists";
+            }
+            conflict = "Email already exists";
+        }
+        return conflict;
+    }
+
+    private ResponseEntity<Map<String, Object>> conflictResponse(String error) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", error);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.badRequest().body(response);
+    }
+
     @GetMapping("/validate")
     public ResponseEntity<?> validateToken(@RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
@@ -132,15 +175,12 @@ public class AuthController {
 
             String token = authHeader.substring(7);
             
-            if (!jwtUtil.validateToken(token)) {
+            // Expired tokens fail verification too
+            String username = jwtUtil.validateAndGetUsername(token);
+            if (username == null) {
                 return ResponseEntity.badRequest().body("Invalid token");
             }
 
-            if (jwtUtil.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body("Token expired");
-            }
-
-            String username = jwtUtil.extractUsername(token);
             return ResponseEntity.ok("Token is valid for user: " + username);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Token validation failed");
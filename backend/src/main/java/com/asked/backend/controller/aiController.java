@@ -1,22 +1,32 @@
 package com.asked.backend.controller;
 
+import com.asked.backend.config.RateLimitFilter;
 import com.asked.backend.dto.CustomSummarizeRequest;
 import com.asked.backend.dto.SummarizeRequest;
-import com.asked.backend.model.flashcard;
+import com.asked.backend.exception.QuotaExceededException;
+import com.asked.backend.services.ChunkedGenerationService;
+import com.asked.backend.services.CompletionStreamListener;
+import com.asked.backend.services.ExtractedDocument;
+import com.asked.backend.services.GenerationOptions;
+import com.asked.backend.services.LlmResponseCache;
 import com.asked.backend.services.OpenRouterService;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import com.asked.backend.services.PdfExtractionService;
+import jakarta.servlet.http.HttpServletRequest;
+import okhttp3.Call;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
-
-import static com.asked.backend.utils.fileStoragePaths.UPLOAD_DIR;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/ai")
@@ -25,12 +35,24 @@ public class aiController {
     @Autowired
     private OpenRouterService openRouterservice;
 
+    @Autowired
+    private ChunkedGenerationService chunkedGenerationService;
+
+    @Autowired
+    private PdfExtractionService pdfExtractionService;
+
+    @Value("${openrouter.stream.timeout-ms:300000}")
+    private long streamTimeoutMs;
+
     private static final String UPLOAD_DIR = System.getProperty("user.dir") + "/uploads/";
 
     @PostMapping("/summarize")
-    public ResponseEntity<?> summarize(@RequestBody SummarizeRequest request) {
+    public ResponseEntity<?> summarize(@RequestBody SummarizeRequest request,
+                                       @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                       HttpServletRequest httpRequest) {
         try {
-            String summary = openRouterservice.summarizeText(request.getInputText(), "Summarize this concisely in 3-4 lines.");
+            String summary = chunkedGenerationService.summarize(request.getInputText(), "Summarize this concisely in 3-4 lines.",
+                    null, options(httpRequest, bypassCache));
             return ResponseEntity.ok(summary);
         } catch (IOException e) {
             e.printStackTrace();
@@ -43,9 +65,12 @@ public class aiController {
 
 
     @PostMapping("/custom-summarize")
-    public ResponseEntity<?> customSummarize(@RequestBody CustomSummarizeRequest request) {
+    public ResponseEntity<?> customSummarize(@RequestBody CustomSummarizeRequest request,
+                                             @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                             HttpServletRequest httpRequest) {
         try {
-            String summary = openRouterservice.summarizeText(request.getInputText(), request.getPrompt());
+            String summary = chunkedGenerationService.summarize(request.getInputText(), request.getPrompt(),
+                    null, options(httpRequest, bypassCache));
             return ResponseEntity.ok(summary);
         } catch (IOException e) {
             e.printStackTrace();
@@ -56,8 +81,118 @@ public class aiController {
     }
 
 
+    /**
+     * Streaming variant of /summarize: tokens are pushed as server-sent events
+     * while OpenRouter generates them. The request thread is released as soon
+     * as the upstream call is enqueued.
+     */
+    @PostMapping(value = "/summarize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter summarizeStream(@RequestBody SummarizeRequest request,
+                                      @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                      HttpServletRequest httpRequest) {
+        return streamSummary(request.getInputText(), "Summarize this concisely in 3-4 lines.", options(httpRequest, bypassCache));
+    }
+
+    @PostMapping(value = "/custom-summarize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter customSummarizeStream(@RequestBody CustomSummarizeRequest request,
+                                            @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                            HttpServletRequest httpRequest) {
+        return streamSummary(request.getInputText(), request.getPrompt(), options(httpRequest, bypassCache));
+    }
+
+    private SseEmitter streamSummary(String inputText, String prompt, GenerationOptions options) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        // Registered before the call is enqueued so an early disconnect still stops it;
+        // whichever of the two sides comes second does the cancelling
+        AtomicReference<Call> upstream = new AtomicReference<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        Runnable cancelUpstream = () -> {
+            closed.set(true);
+            Call call = upstream.get();
+            if (call != null) {
+                call.cancel();
+            }
+        };
+        emitter.onCompletion(cancelUpstream);
+        emitter.onTimeout(cancelUpstream);
+        emitter.onError(e -> cancelUpstream.run());
+
+        CompletionStreamListener listener = new CompletionStreamListener() {
+            @Override
+            public void onToken(String token) {
+                send(SseEmitter.event().name("token").data(Map.of("token", token), MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void onComplete() {
+                send(SseEmitter.event().name("done").data("{}", MediaType.APPLICATION_JSON));
+                emitter.complete();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                send(SseEmitter.event().name("error")
+                        .data(Map.of("error", "Summarization failed: " + error.getMessage()), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            }
+
+            private void send(SseEmitter.SseEventBuilder event) {
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // Client disconnected or emitter already timed out: stop paying for tokens
+                    cancelUpstream.run();
+                    emitter.completeWithError(e);
+                }
+            }
+        };
+
+        try {
+            Call call = openRouterservice.streamSummary(inputText, prompt, options, listener);
+            if (call != null) {
+                upstream.set(call);
+                if (closed.get()) {
+                    call.cancel();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            listener.onError(e);
+        } catch (QuotaExceededException e) {
+            // The stream is already the response, so the budget goes in the error event
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of(
+                        "error", e.getMessage(),
+                        "remainingTokens", e.getRemainingTokens(),
+                        "retryAfterSeconds", e.getRetryAfterSeconds()), MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException sendError) {
+                // Client already gone
+            }
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+
+    /**
+     * Generates flashcards for an uploaded PDF. Large documents are split into
+     * chunks that are processed in parallel and merged into one deck.
+     *
+     * @param targetCards    total number of cards wanted across the document
+     * @param maxParallelism max chunks sent to the model at the same time
+     */
     @GetMapping("/flashcards")
-    public ResponseEntity<String> aiFlashcards(@RequestParam("filename") String filename) {
+    public ResponseEntity<String> aiFlashcards(@RequestParam("filename") String filename,
+                                               @RequestParam(value = "targetCards", required = false) Integer targetCards,
+                                               @RequestParam(value = "maxParallelism", required = false) Integer maxParallelism,
+                                               @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                               HttpServletRequest httpRequest) {
+        String invalid = chunkedGenerationService.checkRequest(targetCards, maxParallelism);
+        if (invalid != null) {
+            return ResponseEntity.badRequest().body(invalid);
+        }
+
         File file = new File(UPLOAD_DIR + filename);
 
         if (!file.exists()) {
@@ -65,12 +200,10 @@ public class aiController {
         }
 
         try {
-            PDDocument document = PDDocument.load(file);
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
-            document.close();
+            ExtractedDocument document = pdfExtractionService.extract(file);
 
-            String aiResponse = openRouterservice.getFlashcardsFromText(text);
+            String aiResponse = chunkedGenerationService.generateFlashcards(document.getPages(),
+                    targetCards, maxParallelism, options(httpRequest, bypassCache));
             return ResponseEntity.ok(aiResponse);
 
         } catch (IOException e) {
@@ -80,9 +213,15 @@ public class aiController {
     }
 
     @PostMapping("/flashcards-from-text")
-    public ResponseEntity<String> aiFlashcardsFromText(@RequestBody SummarizeRequest request) {
+    public ResponseEntity<String> aiFlashcardsFromText(@RequestBody SummarizeRequest request,
+                                                       @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                                       HttpServletRequest httpRequest) {
+        if (request.getInputText() == null || request.getInputText().isBlank()) {
+            return ResponseEntity.badRequest().body("inputText is required");
+        }
         try {
-            String aiResponse = openRouterservice.getFlashcardsFromText(request.getInputText());
+            String aiResponse = chunkedGenerationService.generateFlashcards(List.of(request.getInputText()),
+                    null, null, options(httpRequest, bypassCache));
             return ResponseEntity.ok(aiResponse);
         } catch (IOException e) {
             e.printStackTrace();
@@ -90,6 +229,10 @@ public class aiController {
         }
     }
 
-  
-
+    // Charges the caller's token budget, keyed as resolved by RateLimitFilter
+    private GenerationOptions options(HttpServletRequest request, boolean bypassCache) {
+        return GenerationOptions.defaults()
+                .setBypassCache(bypassCache)
+                .setQuota(RateLimitFilter.clientKey(request), RateLimitFilter.tier(request));
+    }
 }
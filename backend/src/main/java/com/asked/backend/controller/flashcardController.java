@@ -1,14 +1,17 @@
 package com.asked.backend.controller;
 
+import com.asked.backend.config.AuthenticatedUser;
 import com.asked.backend.model.flashcard;
 import com.asked.backend.model.flashcardRepository;
 import com.asked.backend.model.User;
 import com.asked.backend.model.UserRepository;
-import com.asked.backend.services.OpenRouterService;
-import com.asked.backend.utils.JwtUtil;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import com.asked.backend.services.FlashcardTransferService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -18,10 +21,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
-import static com.asked.backend.utils.fileStoragePaths.UPLOAD_DIR;
+import java.util.Map;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -29,17 +31,26 @@ import org.springframework.security.core.context.SecurityContextHolder;
 @RestController
 public class flashcardController {
 
-    @Autowired
-    private OpenRouterService openRouterservice;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    @Value("${flashcards.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${flashcards.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Keeps the IN list of a bulk delete within what databases plan well
+    @Value("${flashcards.max-bulk-ids:1000}")
+    private int maxBulkIds;
 
     @Autowired
     private flashcardRepository flashcardRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private FlashcardTransferService flashcardTransferService;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private UserRepository userRepository;
 
     // ===================== FILE-BASED ENDPOINTS =====================
 
@@ -147,32 +158,20 @@ public class flashcardController {
     // ===================== DATABASE-BACKED ENDPOINTS =====================
 
     /**
-     * Save a list of flashcards to the database (associated with authenticated user)
+     * Save a list of flashcards to the database (associated with authenticated user).
+     * Responds with the number saved and their new ids, in request order.
      */
     @PostMapping("/db/flashcards")
     public ResponseEntity<?> saveFlashcardsToDb(@RequestBody List<flashcard> flashcards) {
         try {
-            System.out.println("Received flashcards: " + flashcards.size());
-            
-            // Get current authenticated user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-            System.out.println("Authenticated user: " + username);
-            
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found: " + username));
-
-            // Associate flashcards with the user
-            for (flashcard card : flashcards) {
-                System.out.println("Processing card - Question: " + card.getQuestion() + ", Answer: " + card.getAnswer() + ", Folder: " + card.getFolder());
-                card.setUser(user);
-            }
+            // Batched JDBC inserts keyed by user_id; no entities or user lookup
+            List<Long> ids = flashcardRepository.insertAll(currentUserId(), flashcards);
 
-            List<flashcard> saved = flashcardRepository.saveAll(flashcards);
-            System.out.println("Successfully saved " + saved.size() + " flashcards");
-            return ResponseEntity.ok(saved);
+            Map<String, Object> response = new HashMap<>();
+            response.put("saved", ids.size());
+            response.put("ids", ids);
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
-            e.printStackTrace();
             System.err.println("Error saving flashcards: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to save flashcards: " + e.getMessage());
@@ -180,50 +179,95 @@ public class flashcardController {
     }
 
     /**
-     * Get all flashcards for the authenticated user from the database
+     * Get a page of the authenticated user's flashcards from the database,
+     * optionally within one folder. Pages are ordered by id; when more cards
+     * follow, the X-Next-Cursor header holds the cursor for the next page.
      */
     @GetMapping("/db/flashcards")
-    public ResponseEntity<?> getAllFlashcardsFromDb() {
+    public ResponseEntity<?> getAllFlashcardsFromDb(
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "folder", required = false) String folder) {
         try {
-            // Get current authenticated user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-            
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Get flashcards for the specific user
-            List<flashcard> userFlashcards = flashcardRepository.findByUser(user);
-            return ResponseEntity.ok(userFlashcards);
+            int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+            long afterId = cursor == null ? 0 : cursor;
+            // One extra row tells whether another page follows
+            Limit limit = Limit.of(pageSize + 1);
+
+            Long userId = currentUserId();
+            List<flashcardRepository.CardView> cards = folder == null
+                    ? flashcardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, afterId, limit)
+                    : flashcardRepository.findByUserIdAndFolderAndIdGreaterThanOrderByIdAsc(userId, folder, afterId, limit);
+
+            if (cards.size() <= pageSize) {
+                return ResponseEntity.ok(cards);
+            }
+            List<flashcardRepository.CardView> page = cards.subList(0, pageSize);
+            return ResponseEntity.ok()
+                    .header(NEXT_CURSOR_HEADER, String.valueOf(page.get(pageSize - 1).id()))
+                    .body(page);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve flashcards: " + e.getMessage());
         }
     }
 
+    /**
+     * Stream the authenticated user's whole library as NDJSON (default) or
+     * CSV. Written straight to the response as rows are read, so memory use
+     * does not depend on library size.
+     */
+    @GetMapping("/db/flashcards/export")
+    public void exportFlashcards(@RequestParam(value = "format", required = false) String format,
+                                 HttpServletResponse response) throws IOException {
+        FlashcardTransferService.Format parsed = FlashcardTransferService.Format.parse(format);
+        if (parsed == null) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Unknown format: " + format);
+            return;
+        }
+        Long userId = currentUserId();
+        response.setContentType(parsed.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"flashcards." + parsed.getExtension() + "\"");
+        flashcardTransferService.export(userId, parsed, response.getOutputStream());
+    }
+
+    /**
+     * Import cards from an NDJSON (default) or CSV request body, read
+     * incrementally and inserted in batches. Responds with the number
+     * imported; on a malformed record, 400 with the number already committed.
+     */
+    @PostMapping("/db/flashcards/import")
+    public ResponseEntity<?> importFlashcards(@RequestParam(value = "format", required = false) String format,
+                                              HttpServletRequest request) {
+        FlashcardTransferService.Format parsed = FlashcardTransferService.Format.parse(format);
+        if (parsed == null) {
+            return ResponseEntity.badRequest().body("Unknown format: " + format);
+        }
+        try {
+            long imported = flashcardTransferService.importCards(currentUserId(), parsed, request.getInputStream());
+            return ResponseEntity.ok(Map.of("imported", imported));
+        } catch (FlashcardTransferService.MalformedImportException e) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("error", "Import failed");
+            body.put("message", e.getMessage());
+            body.put("imported", e.getImported());
+            return ResponseEntity.badRequest().body(body);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to import flashcards: " + e.getMessage());
+        }
+    }
+
     /**
      * Get a single flashcard by ID from the database (if owned by authenticated user)
      */
     @GetMapping("/db/flashcards/{id}")
     public ResponseEntity<?> getFlashcardById(@PathVariable Long id) {
         try {
-            // Get current authenticated user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-            
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Find flashcard and check ownership
-            return flashcardRepository.findById(id)
-                    .map(card -> {
-                        if (card.getUser().getId().equals(user.getId())) {
-                            return ResponseEntity.ok(card);
-                        } else {
-                            return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                                    .body("Access denied");
-                        }
-                    })
+            // One query scoped to the owner; someone else's card is simply not found
+            return flashcardRepository.findByIdAndUserId(id, currentUserId())
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
                     .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
                             .body("Flashcard not found"));
         } catch (Exception e) {
@@ -238,29 +282,87 @@ public class flashcardController {
     @DeleteMapping("/db/flashcards/{id}")
     public ResponseEntity<String> deleteFlashcardById(@PathVariable Long id) {
         try {
-            // Get current authenticated user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-            
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Find flashcard and check ownership
-            return flashcardRepository.findById(id)
-                    .map(card -> {
-                        if (card.getUser().getId().equals(user.getId())) {
-                            flashcardRepository.deleteById(id);
-                            return ResponseEntity.ok("Flashcard deleted");
-                        } else {
-                            return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                                    .body("Access denied");
-                        }
-                    })
-                    .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
-                            .body("Flashcard not found"));
+            // Single DELETE ... WHERE id = ? AND user_id = ?
+            if (flashcardRepository.deleteByIdAndUserId(id, currentUserId()) == 0) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("Flashcard not found");
+            }
+            return ResponseEntity.ok("Flashcard deleted");
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to delete flashcard: " + e.getMessage());
         }
     }
+
+    /**
+     * Delete several of the authenticated user's flashcards by id in one
+     * statement. Ids that do not exist or belong to someone else are skipped;
+     * the response counts the cards actually deleted.
+     */
+    @PostMapping("/db/flashcards/delete")
+    public ResponseEntity<?> deleteFlashcardsByIds(@RequestBody List<Long> ids) {
+        if (ids.size() > maxBulkIds) {
+            return ResponseEntity.badRequest()
+                    .body("At most " + maxBulkIds + " ids per request");
+        }
+        try {
+            int deleted = ids.isEmpty() ? 0 : flashcardRepository.deleteByUserIdAndIdIn(currentUserId(), ids);
+            return ResponseEntity.ok(Map.of("deleted", deleted));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to delete flashcards: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete every flashcard in one of the authenticated user's folders. An
+     * empty name selects the cards that have no folder.
+     */
+    @DeleteMapping("/db/flashcards/folder")
+    public ResponseEntity<?> deleteFolder(@RequestParam("name") String name) {
+        try {
+            int deleted = flashcardRepository.deleteByUserIdAndFolder(currentUserId(), folderOrNull(name));
+            return ResponseEntity.ok(Map.of("deleted", deleted));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to delete folder: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rename a folder, or merge it into another, by moving all of its cards.
+     * An empty name files the cards that have no folder.
+     */
+    @PutMapping("/db/flashcards/folder")
+    public ResponseEntity<?> moveFolder(@RequestParam("name") String name, @RequestParam("to") String to) {
+        if (to.isBlank()) {
+            return ResponseEntity.badRequest().body("Target folder name is required");
+        }
+        try {
+            int moved = flashcardRepository.moveFolder(currentUserId(), folderOrNull(name), to);
+            return ResponseEntity.ok(Map.of("moved", moved));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to move folder: " + e.getMessage());
+        }
+    }
+
+    private static String folderOrNull(String name) {
+        return name == null || name.isBlank() ? null : name;
+    }
+
+    /**
+     * Id of the authenticated user, taken from the principal set by the JWT
+     * filter. Falls back to a lookup for other authentication types.
+     */
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof AuthenticatedUser principal) {
+            return principal.getId();
+        }
+        String username = authentication.getName();
+        return userRepository.findByUsername(username)
+                .map(User::getId)
+                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+    }
 }
@@ -0,0 +1,165 @@
+package com.asked.backend.controller;
+
+import com.asked.backend.config.RateLimitFilter;
+import com.asked.backend.services.AiJob;
+import com.asked.backend.services.AiJobService;
+import com.asked.backend.services.ChunkedGenerationService;
+import com.asked.backend.services.GenerationOptions;
+import com.asked.backend.services.LlmResponseCache;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.asked.backend.utils.fileStoragePaths.UPLOAD_DIR;
+
+/**
+ * Background extraction/generation jobs. Start one for an uploaded file (or
+ * via /upload?generate=...), then poll GET /jobs/{id} or subscribe to
+ * GET /jobs/{id}/events for progress and partial results. A job is only
+ * visible to the client (user or IP) that started it.
+ */
+@RestController
+@RequestMapping("/jobs")
+public class jobController {
+
+    @Autowired
+    private AiJobService aiJobService;
+
+    @Autowired
+    private ChunkedGenerationService chunkedGenerationService;
+
+    @Value("${jobs.events.timeout-ms:600000}")
+    private long eventsTimeoutMs;
+
+    @PostMapping
+    public ResponseEntity<?> startJob(@RequestParam("filename") String filename,
+                                      @RequestParam(value = "type", defaultValue = "flashcards") String type,
+                                      @RequestParam(value = "targetCards", required = false) Integer targetCards,
+                                      @RequestParam(value = "maxParallelism", required = false) Integer maxParallelism,
+                                      @RequestParam(value = "prompt", required = false) String prompt,
+                                      @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                      HttpServletRequest request) {
+        AiJob.Type jobType = AiJob.Type.parse(type);
+        if (jobType == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Invalid job type");
+            response.put("message", "Type must be one of none, extract, flashcards, summary");
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        String invalid = chunkedGenerationService.checkRequest(targetCards, maxParallelism);
+        if (invalid != null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Invalid generation settings");
+            response.put("message", invalid);
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        File file = new File(UPLOAD_DIR + filename);
+        if (!file.exists()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "File not found");
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
+        AiJob job = aiJobService.submit(file, jobType, targetCards, maxParallelism, prompt,
+                GenerationOptions.defaults().setBypassCache(bypassCache)
+                        .setQuota(RateLimitFilter.clientKey(request), RateLimitFilter.tier(request)),
+                RateLimitFilter.clientKey(request));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(describe(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable String id, HttpServletRequest request) {
+        AiJob job = find(id, request);
+        if (job == null) {
+            return notFound(id);
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Server-sent events: a "progress" event with the full job state on every
+     * change, then "done" or "error" once the job finishes.
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> jobEvents(@PathVariable String id, HttpServletRequest request) {
+        AiJob job = find(id, request);
+        if (job == null) {
+            // No JSON body: it could not be written as text/event-stream
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        SseEmitter emitter = new SseEmitter(eventsTimeoutMs);
+        AtomicBoolean closed = new AtomicBoolean();
+
+        Consumer<AiJob> listener = new Consumer<>() {
+            @Override
+            public void accept(AiJob update) {
+                if (closed.get()) {
+                    return;
+                }
+                try {
+                    emitter.send(SseEmitter.event().name("progress").data(update, MediaType.APPLICATION_JSON));
+                    if (update.getStatus().isTerminal() && closed.compareAndSet(false, true)) {
+                        String name = update.getStatus() == AiJob.Status.COMPLETED ? "done" : "error";
+                        emitter.send(SseEmitter.event().name(name).data(update, MediaType.APPLICATION_JSON));
+                        update.unsubscribe(this);
+                        emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client disconnected or emitter already timed out
+                    closed.set(true);
+                    update.unsubscribe(this);
+                    emitter.completeWithError(e);
+                }
+            }
+        };
+
+        emitter.onCompletion(() -> job.unsubscribe(listener));
+        emitter.onTimeout(() -> job.unsubscribe(listener));
+        job.subscribe(listener);
+        // Current state first; also covers jobs that finished before the subscription
+        listener.accept(job);
+        return ResponseEntity.ok(emitter);
+    }
+
+    static Map<String, Object> describe(AiJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus());
+        response.put("statusUrl", "/jobs/" + job.getId());
+        response.put("eventsUrl", "/jobs/" + job.getId() + "/events");
+        response.put("timestamp", System.currentTimeMillis());
+        return response;
+    }
+
+    // Someone else's job is reported as missing, so knowing an id is not enough to read it
+    private AiJob find(String id, HttpServletRequest request) {
+        AiJob job = aiJobService.get(id);
+        return job != null && job.isOwnedBy(RateLimitFilter.clientKey(request)) ? job : null;
+    }
+
+    private ResponseEntity<?> notFound(String id) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", "Job not found");
+        response.put("message", "No job with id " + id + " (finished jobs expire)");
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+}
@@ -1,10 +1,14 @@
 package com.asked.backend.controller;
 
-import com.asked.backend.model.flashcard;
-import com.asked.backend.services.OpenRouterService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import com.asked.backend.config.RateLimitFilter;
+import com.asked.backend.exception.JobQueueFullException;
+import com.asked.backend.services.AiJob;
+import com.asked.backend.services.AiJobService;
+import com.asked.backend.services.ChunkedGenerationService;
+import com.asked.backend.services.GenerationOptions;
+import com.asked.backend.services.LlmResponseCache;
+import com.asked.backend.services.PdfExtractionService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,12 +18,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import com.asked.backend.dto.ValidationUtils;
 
@@ -29,11 +28,45 @@ import static com.asked.backend.utils.fileStoragePaths.UPLOAD_DIR;
 @RestController
 public class uploadController {
     @Autowired
-    private OpenRouterService openRouterservice;
+    private PdfExtractionService pdfExtractionService;
+
+    @Autowired
+    private AiJobService aiJobService;
+
+    @Autowired
+    private ChunkedGenerationService chunkedGenerationService;
 
 
+    /**
+     * Saves the PDF and queues a background job for it. With {@code generate}
+     * set to "flashcards" or "summary" the job also runs AI generation; the
+     * returned jobId can be polled at /jobs/{id}.
+     */
     @PostMapping("/upload")
-    public ResponseEntity<?> uploadPDF(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadPDF(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "generate", defaultValue = "none") String generate,
+                                       @RequestParam(value = "targetCards", required = false) Integer targetCards,
+                                       @RequestParam(value = "prompt", required = false) String prompt,
+                                       @RequestHeader(value = LlmResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache,
+                                       HttpServletRequest request) {
+        AiJob.Type jobType = AiJob.Type.parse(generate);
+        if (jobType == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Invalid generate option");
+            response.put("message", "Generate must be one of none, flashcards, summary");
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        String invalid = chunkedGenerationService.checkRequest(targetCards, null);
+        if (invalid != null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Invalid generation settings");
+            response.put("message", invalid);
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.badRequest().body(response);
+        }
+
         try {
             // Validate file
             if (file.isEmpty()) {
@@ -79,9 +112,25 @@ public class uploadController {
 
             // Save file with sanitized name
             String filePath = UPLOAD_DIR + sanitizedFilename;
-            file.transferTo(new File(filePath));
+            File savedFile = new File(filePath);
+            file.transferTo(savedFile);
 
             Map<String, Object> response = new HashMap<>();
+            try {
+                AiJob job = aiJobService.submit(savedFile, jobType, targetCards, null, prompt,
+                        GenerationOptions.defaults().setBypassCache(bypassCache)
+                        .setQuota(RateLimitFilter.clientKey(request), RateLimitFilter.tier(request)),
+                        RateLimitFilter.clientKey(request));
+                response.putAll(jobController.describe(job));
+            } catch (JobQueueFullException e) {
+                if (jobType != AiJob.Type.EXTRACT) {
+                    // File is saved; the client can retry with POST /jobs
+                    throw new JobQueueFullException("File uploaded but the job queue is full; retry with POST /jobs?filename="
+                            + sanitizedFilename, e.getRetryAfterSeconds());
+                }
+                // Extraction only: best-effort warm-up is enough
+                pdfExtractionService.warm(savedFile);
+            }
             response.put("message", "File uploaded successfully");
             response.put("filename", sanitizedFilename);
             response.put("size", file.getSize());
@@ -106,10 +155,7 @@ public class uploadController {
         }
 
         try {
-            PDDocument document = PDDocument.load(file);
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
-            document.close();
+            String text = pdfExtractionService.extract(file).getText();
 
             return ResponseEntity.ok("Extracted text:\n" + text);
         } catch (IOException e) {
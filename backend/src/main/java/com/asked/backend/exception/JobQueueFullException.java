@@ -0,0 +1,12 @@
+package com.asked.backend.exception;
+
+/**
+ * Thrown when the background job queue is full. Mapped to 503 with a
+ * Retry-After header by {@link GlobalExceptionHandler}.
+ */
+public class JobQueueFullException extends ServiceBusyException {
+
+    public JobQueueFullException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
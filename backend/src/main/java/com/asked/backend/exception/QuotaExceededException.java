@@ -0,0 +1,32 @@
+package com.asked.backend.exception;
+
+/**
+ * Thrown when an AI request would exceed the caller's token budget. Mapped
+ * to 429 with a Retry-After header and the remaining budget by
+ * {@link GlobalExceptionHandler}.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    private final long remainingTokens;
+    private final long limitTokens;
+    private final long retryAfterSeconds;
+
+    public QuotaExceededException(String message, long remainingTokens, long limitTokens, long retryAfterSeconds) {
+        super(message);
+        this.remainingTokens = remainingTokens;
+        this.limitTokens = limitTokens;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRemainingTokens() {
+        return remainingTokens;
+    }
+
+    public long getLimitTokens() {
+        return limitTokens;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
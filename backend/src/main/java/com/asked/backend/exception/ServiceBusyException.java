@@ -0,0 +1,19 @@
+package com.asked.backend.exception;
+
+/**
+ * Thrown when a bounded resource (job queue, password hashing pool) is
+ * full. Mapped to 503 with a Retry-After header by {@link GlobalExceptionHandler}.
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
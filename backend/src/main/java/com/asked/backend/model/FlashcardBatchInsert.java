@@ -0,0 +1,15 @@
+package com.asked.backend.model;
+
+import java.util.List;
+
+/**
+ * Bulk insert for {@link flashcardRepository}. With IDENTITY ids Hibernate
+ * inserts one row per statement; this path sends them as JDBC batches.
+ */
+public interface FlashcardBatchInsert {
+
+    /**
+     * Inserts the cards for one user and returns their new ids, in order.
+     */
+    List<Long> insertAll(Long userId, List<flashcard> cards);
+}
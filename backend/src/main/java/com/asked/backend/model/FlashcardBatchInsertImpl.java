@@ -0,0 +1,80 @@
+package com.asked.backend.model;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch insert behind {@link FlashcardBatchInsert}, picked up by Spring
+ * Data as a fragment of {@link flashcardRepository}.
+ *
+ * Rows go out {@code flashcards.insert-batch-size} at a time and the ids
+ * come back as generated keys, so the id column stays IDENTITY and existing
+ * rows need no migration. On MySQL, add {@code rewriteBatchedStatements=true}
+ * to the JDBC URL so each batch is sent as one multi-row INSERT.
+ */
+public class FlashcardBatchInsertImpl implements FlashcardBatchInsert {
+
+    @Value("${flashcards.insert-batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile String insertSql;
+
+    @Override
+    @Transactional
+    public List<Long> insertAll(Long userId, List<flashcard> cards) {
+        String sql = insertSql();
+        List<Long> ids = new ArrayList<>(cards.size());
+        for (int from = 0; from < cards.size(); from += batchSize) {
+            List<flashcard> batch = cards.subList(from, Math.min(cards.size(), from + batchSize));
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            flashcard card = batch.get(i);
+                            ps.setString(1, card.getQuestion());
+                            ps.setString(2, card.getAnswer());
+                            ps.setLong(3, userId);
+                            ps.setString(4, card.getFolder());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    }, keys);
+            for (Map<String, Object> row : keys.getKeyList()) {
+                ids.add(((Number) row.values().iterator().next()).longValue());
+            }
+        }
+        return ids;
+    }
+
+    // Identifiers quoted with the driver's quote character: matches the lower-case
+    // names Hibernate creates whether or not it quotes them itself
+    private String insertSql() {
+        String sql = insertSql;
+        if (sql == null) {
+            String q = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getIdentifierQuoteString());
+            sql = "INSERT INTO " + q + "flashcard" + q + " (" + q + "question" + q + ", " + q + "answer" + q + ", "
+                    + q + "user_id" + q + ", " + q + "folder" + q + ") VALUES (?, ?, ?, ?)";
+            insertSql = sql;
+        }
+        return sql;
+    }
+}
@@ -1,10 +1,12 @@
 package com.asked.backend.model;
 
+import com.asked.backend.config.UserPrincipalCacheListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserPrincipalCacheListener.class)
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,13 +1,35 @@
 package com.asked.backend.model;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
-    boolean existsByUsername(String username);
-    boolean existsByEmail(String email);
+
+    // Both existence checks in one round trip; at most one row per unique column can match
+    List<Identity> findTop2ByUsernameOrEmail(String username, String email);
+
+    // Keyset batches for scanning the whole table
+    List<Identity> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    // Rehash of a verified password: only the column, and only if nobody changed it in the meantime.
+    // Bypasses entity listeners, so the caller evicts the cached principal.
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :hash where u.id = :id and u.password = :oldHash")
+    int updatePasswordIfUnchanged(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("hash") String hash);
+
+    interface Identity {
+        Long getId();
+        String getUsername();
+        String getEmail();
+    }
 } 
\ No newline at end of file
@@ -1,8 +1,15 @@
 package com.asked.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 @Entity
+// Every read is scoped to one user: by owner, by owner and folder, and by owner in id order (keyset pages)
+@Table(indexes = {
+        @Index(name = "idx_flashcard_user", columnList = "user_id"),
+        @Index(name = "idx_flashcard_user_folder", columnList = "user_id, folder"),
+        @Index(name = "idx_flashcard_user_id", columnList = "user_id, id")
+})
 public class flashcard {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -11,6 +18,8 @@ public class flashcard {
     private String question;
     private String answer;
 
+    // Never serialized: usually an unloaded proxy, and would expose the owner's password hash
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
@@ -1,10 +1,64 @@
 package com.asked.backend.model;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface flashcardRepository extends JpaRepository<flashcard, Long> {
+public interface flashcardRepository extends JpaRepository<flashcard, Long>, FlashcardBatchInsert {
     List<flashcard> findByUser(User user);
+
+    // Filters on the user_id column; no users lookup needed
+    List<flashcard> findByUserId(Long userId);
+
+    // Keyset pages: rows after the cursor id, read as projections so no entities or user proxies are built
+    List<CardView> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long afterId, Limit limit);
+
+    List<CardView> findByUserIdAndFolderAndIdGreaterThanOrderByIdAsc(Long userId, String folder, Long afterId, Limit limit);
+
+    // Forward-only cursor over a whole library; consume inside a transaction and close it.
+    // On MySQL the fetch size only streams with useCursorFetch=true on the JDBC URL.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<CardView> streamByUserIdOrderByIdAsc(Long userId);
+
+    // Ownership checked in the WHERE clause: not found and not owned look the same
+    Optional<CardView> findByIdAndUserId(Long id, Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from flashcard f where f.id = :id and f.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    // Set-based bulk operations, each one statement scoped to the owner; they return the rows affected.
+    // A null folder matches the cards without one, which "f.folder = null" never would.
+
+    @Modifying
+    @Transactional
+    @Query("delete from flashcard f where f.user.id = :userId and f.id in :ids")
+    int deleteByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("delete from flashcard f where f.user.id = :userId and ((:folder is null and f.folder is null) or f.folder = :folder)")
+    int deleteByUserIdAndFolder(@Param("userId") Long userId, @Param("folder") String folder);
+
+    @Modifying
+    @Transactional
+    @Query("update flashcard f set f.folder = :to where f.user.id = :userId and ((:from is null and f.folder is null) or f.folder = :from)")
+    int moveFolder(@Param("userId") Long userId, @Param("from") String from, @Param("to") String to);
+
+    // Plain record rather than an interface projection: no proxy per row
+    record CardView(Long id, String question, String answer, String folder) {
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.asked.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit for one group of routes: at most {@code maxConcurrent}
+ * requests run at once, at most {@code maxQueue} wait for a slot, and a
+ * waiting request gives up after {@code maxWaitMs}.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitMs;
+
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final MeterRegistry meterRegistry;
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueue, long maxWaitMs, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("bulkhead.active", permits, p -> maxConcurrent - p.availablePermits())
+                .tag("group", name)
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.queue.depth", waiting, AtomicInteger::get)
+                .tag("group", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot, waiting up to the configured time. Returns false (and
+     * counts a rejection) when the queue is full or the wait timed out; the
+     * caller must {@link #release()} after a true return.
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            reject("queue_full");
+            return false;
+        }
+        try {
+            if (permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            reject("timeout");
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    private void reject(String reason) {
+        meterRegistry.counter("bulkhead.rejected", "group", name, "reason", reason).increment();
+    }
+}
@@ -0,0 +1,40 @@
+package com.asked.backend.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default, single-instance store. Limits are enforced by the in-process
+ * limiter alone; this exists so the store can be swapped without code changes.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final Map<Counter, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public Map<Counter, Long> addAll(Map<Counter, Long> increments) {
+        Map<Counter, Long> totals = new HashMap<>();
+        increments.forEach((counter, delta) ->
+                totals.put(counter, counters.computeIfAbsent(counter, c -> new AtomicLong()).addAndGet(delta)));
+        return totals;
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        int before = counters.size();
+        counters.keySet().removeIf(counter -> counter.getExpiresAt() <= now);
+        return before - counters.size();
+    }
+}
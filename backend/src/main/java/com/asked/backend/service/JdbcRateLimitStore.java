@@ -0,0 +1,117 @@
+package com.asked.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rate-limit counters in the application database, shared by every instance
+ * pointing at it.
+ *
+ * One flush is one batch of atomic upserts ({@code ON DUPLICATE KEY UPDATE},
+ * which MySQL and H2 in MySQL mode both support) followed by one select per
+ * {@value #BATCH_SIZE} counters to read the totals back. The table is
+ * created on startup if missing.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.limit.store", havingValue = "jdbc")
+public class JdbcRateLimitStore implements RateLimitStore {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Keeps the primary key within InnoDB's index limit for utf8mb4
+    private static final int MAX_KEY_LENGTH = 191;
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS rate_limit_counters ("
+            + "counter_key VARCHAR(" + MAX_KEY_LENGTH + ") NOT NULL, "
+            + "window_start BIGINT NOT NULL, "
+            + "expires_at BIGINT NOT NULL, "
+            + "hits BIGINT NOT NULL, "
+            + "PRIMARY KEY (counter_key, window_start))";
+
+    private static final String UPSERT = "INSERT INTO rate_limit_counters (counter_key, window_start, expires_at, hits) "
+            + "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE hits = hits + VALUES(hits)";
+
+    private static final String SELECT_PREFIX = "SELECT counter_key, window_start, hits FROM rate_limit_counters "
+            + "WHERE counter_key IN (";
+
+    private static final String DELETE_EXPIRED = "DELETE FROM rate_limit_counters WHERE expires_at <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void init() {
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public Map<Counter, Long> addAll(Map<Counter, Long> increments) {
+        if (increments.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Map.Entry<Counter, Long>> changed = new ArrayList<>();
+        for (Map.Entry<Counter, Long> increment : increments.entrySet()) {
+            if (increment.getValue() != 0) {
+                changed.add(increment);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT, changed, BATCH_SIZE, (ps, increment) -> {
+            Counter counter = increment.getKey();
+            ps.setString(1, column(counter.getKey()));
+            ps.setLong(2, counter.getWindowStart());
+            ps.setLong(3, counter.getExpiresAt());
+            ps.setLong(4, increment.getValue());
+        });
+
+        // Read every requested counter back, zero increments included: they are
+        // how an instance learns what the others have added
+        Map<String, List<Counter>> byColumn = new HashMap<>();
+        for (Counter counter : increments.keySet()) {
+            byColumn.computeIfAbsent(column(counter.getKey()), k -> new ArrayList<>()).add(counter);
+        }
+        Map<Counter, Long> totals = new HashMap<>();
+        List<String> columns = new ArrayList<>(byColumn.keySet());
+        for (int from = 0; from < columns.size(); from += BATCH_SIZE) {
+            List<String> batch = columns.subList(from, Math.min(columns.size(), from + BATCH_SIZE));
+            String sql = SELECT_PREFIX + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+            jdbcTemplate.query(sql, rs -> {
+                long windowStart = rs.getLong("window_start");
+                for (Counter counter : byColumn.get(rs.getString("counter_key"))) {
+                    if (counter.getWindowStart() == windowStart) {
+                        totals.put(counter, rs.getLong("hits"));
+                    }
+                }
+            }, batch.toArray());
+        }
+        return totals;
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        return jdbcTemplate.update(DELETE_EXPIRED, now);
+    }
+
+    // Long keys (unusual routes) are shortened to fit the column, keeping a hash of the rest
+    private static String column(String key) {
+        if (key.length() <= MAX_KEY_LENGTH) {
+            return key;
+        }
+        String hash = Integer.toHexString(key.hashCode());
+        return key.substring(0, MAX_KEY_LENGTH - hash.length() - 1) + "#" + hash;
+    }
+}
@@ -0,0 +1,40 @@
+package com.asked.backend.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size bound for the per-client maps that must stay lock-free on the hot
+ * path. Entries carry their own last-use time; once a map is full, the
+ * least recently used tenth is dropped in one pass, so a flood of new keys
+ * pays one scan per {@code maxEntries / 10} inserts and recent clients keep
+ * their own state.
+ */
+final class LeastRecentlyUsed {
+
+    private LeastRecentlyUsed() {
+    }
+
+    /**
+     * Evicts the least recently used entries until the map has room for a
+     * tenth of {@code maxEntries} more. Callers serialize on their own lock.
+     *
+     * @return the number of entries removed
+     */
+    static <K, V> int evict(Map<K, V> map, int maxEntries, ToLongFunction<V> lastUsed) {
+        int excess = map.size() - (maxEntries - Math.max(1, maxEntries / 10));
+        if (excess <= 0) {
+            return 0;
+        }
+        long[] times = map.values().stream().mapToLong(lastUsed).toArray();
+        if (times.length == 0) {
+            return 0;
+        }
+        Arrays.sort(times);
+        long cutoff = times[Math.min(excess, times.length) - 1];
+        int before = map.size();
+        map.values().removeIf(value -> lastUsed.applyAsLong(value) <= cutoff);
+        return before - map.size();
+    }
+}
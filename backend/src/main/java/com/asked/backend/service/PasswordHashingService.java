@@ -0,0 +1,171 @@
+package com.asked.backend.service;
+
+import com.asked.backend.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs BCrypt on a small dedicated pool so a burst of logins cannot take
+ * every request thread.
+ *
+ * Each hash is CPU-bound (around 100 ms at the default cost), so the pool is
+ * sized to the cores and fronted by a bounded queue; when the queue is full,
+ * or a hash has waited longer than {@code auth.hashing.timeout-ms}, the call
+ * fails fast with {@link ServiceBusyException} instead of queueing more
+ * work. The encoder is the {@code SecurityConfig} bean, so its cost
+ * ({@code auth.bcrypt.strength}) applies to new hashes, and hashes stored at
+ * a lower cost can be upgraded after a successful login via
+ * {@link #upgradeLater}.
+ */
+@Service
+public class PasswordHashingService {
+
+    @Value("${auth.hashing.threads:0}")
+    private int threads;
+
+    @Value("${auth.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.hashing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${auth.hashing.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
+    @Autowired
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        // 0 means one thread per core
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        meterRegistry.gauge("auth.password.queue.depth", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("auth.password.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Hashes a new password.
+     *
+     * @throws ServiceBusyException when the pool is saturated
+     */
+    public String encode(String rawPassword) {
+        return run("encode", () -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks a password against a stored hash.
+     *
+     * @throws ServiceBusyException when the pool is saturated
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run("matches", () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /** True when the stored hash uses a lower cost than the one configured now. */
+    public boolean needsUpgrade(String encodedPassword) {
+        return encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Rehashes {@code rawPassword} at the current cost in the background and
+     * hands the new hash to {@code onUpgraded}. Best effort: skipped when the
+     * queue is more than half full, so upgrades never crowd out logins.
+     */
+    public void upgradeLater(String rawPassword, Consumer<String> onUpgraded) {
+        if (executor.getQueue().size() > queueCapacity / 2) {
+            meterRegistry.counter("auth.password.upgrades", "outcome", "skipped").increment();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    onUpgraded.accept(timed("upgrade", () -> passwordEncoder.encode(rawPassword)));
+                    meterRegistry.counter("auth.password.upgrades", "outcome", "success").increment();
+                } catch (Exception e) {
+                    meterRegistry.counter("auth.password.upgrades", "outcome", "failure").increment();
+                    System.err.println("Password hash upgrade failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("auth.password.upgrades", "outcome", "skipped").increment();
+        }
+    }
+
+    private <T> T run(String operation, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timed(operation, task));
+        } catch (RejectedExecutionException e) {
+            throw busy(operation, "queue_full");
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw busy(operation, "timeout");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy(operation, "interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    private <T> T timed(String operation, Callable<T> task) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return task.call();
+        } finally {
+            sample.stop(meterRegistry.timer("auth.password.hash", "operation", operation));
+        }
+    }
+
+    private ServiceBusyException busy(String operation, String cause) {
+        meterRegistry.counter("auth.password.rejected", "operation", operation, "cause", cause).increment();
+        return new ServiceBusyException("Authentication is busy, try again shortly", retryAfterSeconds);
+    }
+}
@@ -0,0 +1,102 @@
+package com.asked.backend.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local view of cluster-wide counters in a shared {@link RateLimitStore}.
+ *
+ * Requests are admitted against the last total read from the store plus
+ * what this instance has counted since; {@link #flush} pushes those local
+ * counts as one batch and reads fresh totals back. The store is therefore
+ * hit once per flush, not per request, at the cost of each instance seeing
+ * the others' traffic up to one flush interval late.
+ */
+class RateLimitNearCache {
+
+    private final RateLimitStore store;
+    private final int maxEntries;
+
+    private final Map<RateLimitStore.Counter, Entry> entries = new ConcurrentHashMap<>();
+
+    RateLimitNearCache(RateLimitStore store, int maxEntries) {
+        this.store = store;
+        this.maxEntries = maxEntries;
+    }
+
+    boolean tryAcquire(RateLimitStore.Counter counter, long limit) {
+        Entry entry = entries.get(counter);
+        if (entry == null) {
+            if (entries.size() >= maxEntries) {
+                // Full: the local limiter still applies
+                return true;
+            }
+            entry = entries.computeIfAbsent(counter, c -> new Entry());
+        }
+        entry.touched = true;
+        while (true) {
+            long pending = entry.pending.get();
+            if (entry.synced + pending >= limit) {
+                return false;
+            }
+            if (entry.pending.compareAndSet(pending, pending + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Takes back a count made by {@link #tryAcquire} for a request that was rejected after all. */
+    void release(RateLimitStore.Counter counter) {
+        Entry entry = entries.get(counter);
+        if (entry != null) {
+            entry.pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Sends local counts for every counter used since the last flush and
+     * refreshes their totals, then forgets counters whose window has ended.
+     * A store failure propagates and leaves the local counts to be retried.
+     */
+    synchronized void flush(long now) {
+        Map<RateLimitStore.Counter, Long> increments = new HashMap<>();
+        entries.forEach((counter, entry) -> {
+            if (entry.touched || entry.pending.get() != 0) {
+                increments.put(counter, entry.pending.get());
+            }
+        });
+
+        if (!increments.isEmpty()) {
+            Map<RateLimitStore.Counter, Long> totals = store.addAll(increments);
+            increments.forEach((counter, sent) -> {
+                Entry entry = entries.get(counter);
+                Long total = totals.get(counter);
+                if (entry == null) {
+                    return;
+                }
+                entry.touched = false;
+                // Total first, then drop what it now includes: briefly counting twice is the safe side
+                if (total != null) {
+                    entry.synced = total;
+                }
+                entry.pending.addAndGet(-sent);
+            });
+        }
+
+        entries.keySet().removeIf(counter -> counter.getExpiresAt() <= now);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        // Cluster total as of the last flush, this instance's flushed counts included
+        private volatile long synced;
+        // Counted here since the last flush
+        private final AtomicLong pending = new AtomicLong();
+        private volatile boolean touched;
+    }
+}
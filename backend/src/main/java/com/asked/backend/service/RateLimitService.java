@@ -1,91 +1,476 @@
 package com.asked.backend.service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Per-client, per-route rate limiting over two windows at once: a minute
+ * window with GCRA (the generic cell rate algorithm, equivalent to a token
+ * bucket) and an hour window with a two-bucket sliding-window approximation.
+ * A request must fit both.
+ *
+ * Each (client, route) pair holds two longs. The minute window is the
+ * theoretical arrival time (TAT) of the next request, in
+ * {@link System#nanoTime()} units. The hour window packs the current hour
+ * index with the counts of the current and previous hour; the previous
+ * count is weighted by how much of it still overlaps the sliding hour.
+ * Both are updated with CAS loops, so there is no lock and no lost update
+ * under contention.
+ *
+ * Limits depend on the {@link Tier} (anonymous clients keyed by IP, or
+ * signed-in users keyed by id) and the route group, and are read from
+ * {@code rate.limit.<tier>.<group>.per-minute|per-hour} with groups
+ * {@code default} and {@code ai}.
+ *
+ * Routes are normalized to templates ({@code /db/flashcards/{id}}) so ids do
+ * not multiply entries. Idle entries are swept on a schedule, and the map
+ * never grows past {@code rate.limit.max-entries}: when it is full, the least
+ * recently used entries are evicted, so a flood of new keys costs the
+ * flooder its own old state rather than putting fresh clients in a shared
+ * bucket.
+ *
+ * With a shared {@link RateLimitStore} ({@code rate.limit.store=jdbc}) each
+ * request must also fit the cluster-wide minute and hour counters, kept in a
+ * {@link RateLimitNearCache} and flushed every
+ * {@code rate.limit.store.flush-interval-ms}. If the store is unreachable the
+ * local limits still apply.
+ */
 @Service
 public class RateLimitService {
-    
-    // Store rate limit data: IP -> (count, resetTime)
-    private final Map<String, RateLimitData> rateLimitMap = new ConcurrentHashMap<>();
-    
-    // Rate limit configuration
+
+    // Default limits for anonymous clients; signed-in users get twice as much
     private static final int MAX_REQUESTS_PER_MINUTE = 60;
     private static final int MAX_REQUESTS_PER_HOUR = 1000;
     private static final int MAX_AI_REQUESTS_PER_MINUTE = 10;
     private static final int MAX_AI_REQUESTS_PER_HOUR = 100;
-    
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long HOUR_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // Hour counts are packed into 16 bits each
+    private static final int MAX_HOURLY_LIMIT = 0xFFFF;
+
+    private static final int DEFAULT_GROUP = 0;
+    private static final int AI_GROUP = 1;
+
+    public enum Tier {
+        ANONYMOUS("anonymous", 1),
+        USER("user", 2);
+
+        private final String property;
+        private final int defaultMultiplier;
+
+        Tier(String property, int defaultMultiplier) {
+            this.property = property;
+            this.defaultMultiplier = defaultMultiplier;
+        }
+    }
+
+    @Value("${rate.limit.max-entries:100000}")
+    private int maxEntries;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RateLimitStore store;
+
+    // Null unless the store is shared between instances
+    private RateLimitNearCache nearCache;
+
+    // [tier][group]
+    private final Limit[][] limits = new Limit[Tier.values().length][2];
+
+    // (client, route) -> window state
+    private final Map<Key, Window> rateLimitMap = new ConcurrentHashMap<>();
+
+    private final Object evictionLock = new Object();
+
+    @PostConstruct
+    void init() {
+        for (Tier tier : Tier.values()) {
+            limits[tier.ordinal()][DEFAULT_GROUP] = loadLimit(tier, "default",
+                    MAX_REQUESTS_PER_MINUTE, MAX_REQUESTS_PER_HOUR);
+            limits[tier.ordinal()][AI_GROUP] = loadLimit(tier, "ai",
+                    MAX_AI_REQUESTS_PER_MINUTE, MAX_AI_REQUESTS_PER_HOUR);
+        }
+        Gauge.builder("rate_limit.entries", rateLimitMap, Map::size)
+                .description("Live (client, route) rate-limit entries")
+                .register(meterRegistry);
+        if (store.isShared()) {
+            nearCache = new RateLimitNearCache(store, maxEntries);
+            Gauge.builder("rate_limit.near_cache.entries", nearCache, RateLimitNearCache::size)
+                    .description("Shared counters tracked locally between flushes")
+                    .register(meterRegistry);
+        }
+    }
+
+    private Limit loadLimit(Tier tier, String group, int perMinute, int perHour) {
+        String prefix = "rate.limit." + tier.property + "." + group + ".";
+        int minute = environment.getProperty(prefix + "per-minute", Integer.class, perMinute * tier.defaultMultiplier);
+        int hour = environment.getProperty(prefix + "per-hour", Integer.class, perHour * tier.defaultMultiplier);
+        if (minute <= 0 || hour <= 0 || hour > MAX_HOURLY_LIMIT) {
+            throw new IllegalStateException("Invalid rate limit " + prefix + "*: " + minute + "/min, " + hour + "/h");
+        }
+        return new Limit(minute, hour);
+    }
+
     public boolean isAllowed(String clientId, String endpoint) {
-        String key = clientId + ":" + endpoint;
-        LocalDateTime now = LocalDateTime.now();
-        
-        RateLimitData data = rateLimitMap.get(key);
-        
-        if (data == null) {
-            // First request from this client
-            data = new RateLimitData(now);
-            rateLimitMap.put(key, data);
-            return true;
-        }
-        
-        // Check if we need to reset the counter
-        if (ChronoUnit.MINUTES.between(data.getResetTime(), now) >= 1) {
-            data.reset(now);
-        }
-        
-        // Determine limits based on endpoint
-        int maxRequests = getMaxRequestsForEndpoint(endpoint);
-        
-        if (data.getCount() >= maxRequests) {
-            return false;
+        return isAllowed(clientId, endpoint, Tier.ANONYMOUS);
+    }
+
+    public boolean isAllowed(String clientId, String endpoint, Tier tier) {
+        return isAllowed(clientId, endpoint, tier, System.nanoTime());
+    }
+
+    boolean isAllowed(String clientId, String endpoint, long now) {
+        return isAllowed(clientId, endpoint, Tier.ANONYMOUS, now);
+    }
+
+    boolean isAllowed(String clientId, String endpoint, Tier tier, long now) {
+        return tryAcquire(clientId, endpoint, tier, now) == 0;
+    }
+
+    /**
+     * Admits or rejects one request without allocating a result.
+     *
+     * @return 0 if the request is admitted, otherwise roughly how many
+     *         nanoseconds until a retry can succeed (always positive)
+     */
+    public long tryAcquire(String clientId, String endpoint, Tier tier) {
+        return tryAcquire(clientId, endpoint, tier, System.nanoTime());
+    }
+
+    long tryAcquire(String clientId, String endpoint, Tier tier, long now) {
+        String route = normalizeRoute(endpoint);
+        Window window = state(new Key(clientId, route), now);
+        window.lastUsed = now;
+        Limit limit = limits[tier.ordinal()][route.startsWith("/ai/") ? AI_GROUP : DEFAULT_GROUP];
+
+        long wait = window.tryMinute(limit, now);
+        if (wait > 0) {
+            return wait;
+        }
+        wait = window.tryHour(limit, now);
+        if (wait > 0) {
+            // Rejected requests should not use up the minute allowance
+            window.refundMinute(limit);
+            return wait;
+        }
+        if (nearCache != null) {
+            wait = tryAcquireInCluster(clientId + " " + route, limit);
+            if (wait > 0) {
+                window.refundMinute(limit);
+                window.refundHour(now);
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    // Cluster counters are fixed windows, so a rejected client waits for the window to end
+    private long tryAcquireInCluster(String key, Limit limit) {
+        long wallClock = System.currentTimeMillis();
+        RateLimitStore.Counter minute = new RateLimitStore.Counter("m " + key,
+                wallClock - wallClock % MINUTE_MILLIS, MINUTE_MILLIS);
+        if (!nearCache.tryAcquire(minute, limit.perMinute)) {
+            return TimeUnit.MILLISECONDS.toNanos(minute.getExpiresAt() - wallClock);
+        }
+        RateLimitStore.Counter hour = new RateLimitStore.Counter("h " + key,
+                wallClock - wallClock % HOUR_MILLIS, HOUR_MILLIS);
+        if (!nearCache.tryAcquire(hour, limit.perHour)) {
+            nearCache.release(minute);
+            return TimeUnit.MILLISECONDS.toNanos(hour.getExpiresAt() - wallClock);
         }
-        
-        data.increment();
-        return true;
+        return 0;
     }
-    
-    private int getMaxRequestsForEndpoint(String endpoint) {
-        if (endpoint.startsWith("/ai/")) {
-            return MAX_AI_REQUESTS_PER_MINUTE;
+
+    /**
+     * Pushes locally counted requests to the shared store and pulls the
+     * other instances' counts back. Does nothing for a local-only store.
+     */
+    @Scheduled(fixedDelayString = "${rate.limit.store.flush-interval-ms:1000}")
+    public void flush() {
+        if (nearCache == null) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            nearCache.flush(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            outcome = "error";
+            System.err.println("Rate limit store flush failed: " + e.getMessage());
+        } finally {
+            sample.stop(meterRegistry.timer("rate_limit.store.flush", "outcome", outcome));
+        }
+    }
+
+    private Window state(Key key, long now) {
+        Window window = rateLimitMap.get(key);
+        if (window != null) {
+            return window;
+        }
+        if (rateLimitMap.size() >= maxEntries) {
+            synchronized (evictionLock) {
+                if (rateLimitMap.size() >= maxEntries) {
+                    int evicted = LeastRecentlyUsed.evict(rateLimitMap, maxEntries, w -> w.lastUsed);
+                    meterRegistry.counter("rate_limit.evictions", "cause", "capacity").increment(evicted);
+                }
+            }
         }
-        return MAX_REQUESTS_PER_MINUTE;
+        return rateLimitMap.computeIfAbsent(key, k -> new Window(now));
     }
-    
+
+    /**
+     * Drops state for keys with nothing left to remember: the full minute
+     * burst is available and neither hour bucket overlaps the sliding hour.
+     * Such an entry is indistinguishable from a missing one, so nothing is
+     * lost. (A request racing with the sweep may go unrecorded; at most one.)
+     */
+    @Scheduled(fixedDelayString = "${rate.limit.cleanup-interval-ms:60000}")
     public void cleanup() {
-        LocalDateTime now = LocalDateTime.now();
-        rateLimitMap.entrySet().removeIf(entry -> 
-            ChronoUnit.HOURS.between(entry.getValue().getResetTime(), now) >= 1
-        );
-    }
-    
-    private static class RateLimitData {
-        private AtomicInteger count;
-        private LocalDateTime resetTime;
-        
-        public RateLimitData(LocalDateTime resetTime) {
-            this.count = new AtomicInteger(1);
-            this.resetTime = resetTime;
-        }
-        
-        public void increment() {
-            count.incrementAndGet();
-        }
-        
-        public int getCount() {
-            return count.get();
-        }
-        
-        public LocalDateTime getResetTime() {
-            return resetTime;
-        }
-        
-        public void reset(LocalDateTime newResetTime) {
-            this.count.set(0);
-            this.resetTime = newResetTime;
-        }
-    }
-} 
\ No newline at end of file
+        cleanup(System.nanoTime());
+    }
+
+    void cleanup(long now) {
+        int before = rateLimitMap.size();
+        rateLimitMap.values().removeIf(window -> window.isIdle(now));
+        int evicted = before - rateLimitMap.size();
+        if (evicted > 0) {
+            meterRegistry.counter("rate_limit.evictions", "cause", "idle").increment(evicted);
+        }
+        if (nearCache != null) {
+            try {
+                store.deleteExpired(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                System.err.println("Rate limit store cleanup failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replaces path segments that look like ids (numbers, UUIDs, long hex
+     * strings) with {@code {id}}. Returns the input unchanged, without
+     * allocating, when there is nothing to replace.
+     */
+    static String normalizeRoute(String path) {
+        StringBuilder normalized = null;
+        int segmentStart = 1;
+        int length = path.length();
+        for (int i = 1; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                boolean id = isIdSegment(path, segmentStart, i);
+                if (id && normalized == null) {
+                    normalized = new StringBuilder(length).append(path, 0, segmentStart);
+                }
+                if (normalized != null) {
+                    if (id) {
+                        normalized.append("{id}");
+                    } else {
+                        normalized.append(path, segmentStart, i);
+                    }
+                    if (i < length) {
+                        normalized.append('/');
+                    }
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return normalized != null ? normalized.toString() : path;
+    }
+
+    private static boolean isIdSegment(String path, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return false;
+        }
+        boolean digitsOnly = true;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            boolean hex = digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+            if (!digit) {
+                digitsOnly = false;
+            }
+            if (!hex && c != '-') {
+                return false;
+            }
+        }
+        // Numbers of any length; UUIDs and hashes only when long, so "add" or "cafe" stay literal
+        return digitsOnly || length >= 16;
+    }
+
+    private static final class Key {
+        private final String clientId;
+        private final String route;
+        private final int hash;
+
+        Key(String clientId, String route) {
+            this.clientId = clientId;
+            this.route = route;
+            this.hash = 31 * clientId.hashCode() + route.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return hash == other.hash && clientId.equals(other.clientId) && route.equals(other.route);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Limit {
+        // Nanoseconds between requests at the sustained per-minute rate
+        private final long emissionInterval;
+        // How far the TAT may run ahead of now: the whole minute's allowance
+        private final long burstTolerance;
+        private final int perMinute;
+        private final int perHour;
+
+        Limit(int perMinute, int perHour) {
+            this.emissionInterval = MINUTE_NANOS / perMinute;
+            this.burstTolerance = emissionInterval * perMinute;
+            this.perMinute = perMinute;
+            this.perHour = perHour;
+        }
+    }
+
+    private static final class Window {
+        private final AtomicLong tat;
+        // [hour index : 32][previous hour count : 16][current hour count : 16]
+        private final AtomicLong hour;
+        // Last request, in nanoTime units; orders entries for eviction
+        private volatile long lastUsed;
+
+        Window(long now) {
+            this.lastUsed = now;
+            this.tat = new AtomicLong(now);
+            this.hour = new AtomicLong(pack(hourIndex(now), 0, 0));
+        }
+
+        // 0 if admitted, else nanoseconds until the next slot
+        long tryMinute(Limit limit, long now) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + limit.emissionInterval;
+                if (next - now > limit.burstTolerance) {
+                    return next - now - limit.burstTolerance;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        void refundMinute(Limit limit) {
+            tat.addAndGet(-limit.emissionInterval);
+        }
+
+        // 0 if admitted, else roughly nanoseconds until enough of the window has slid past
+        long tryHour(Limit limit, long now) {
+            int index = hourIndex(now);
+            long elapsed = Math.floorMod(now, HOUR_NANOS);
+            while (true) {
+                long packed = hour.get();
+                long rolled = roll(packed, index);
+                long previous = previousCount(rolled);
+                long current = currentCount(rolled);
+                // The previous hour counts for the part of it still inside the sliding hour
+                long weighted = previous * (HOUR_NANOS - elapsed) / HOUR_NANOS;
+                if (weighted + current >= limit.perHour) {
+                    return hourWait(weighted + current + 1 - limit.perHour, previous, current, HOUR_NANOS - elapsed);
+                }
+                if (hour.compareAndSet(packed, rolled + 1)) {
+                    return 0;
+                }
+            }
+        }
+
+        private static long hourWait(long excess, long previous, long current, long untilRoll) {
+            // The previous hour's weight drains linearly until the next roll...
+            if (previous > 0 && excess * HOUR_NANOS <= previous * untilRoll) {
+                return Math.max(1, excess * HOUR_NANOS / previous);
+            }
+            // ...after which the current hour's count drains the same way
+            long remaining = excess - previous * untilRoll / HOUR_NANOS;
+            if (current <= 0 || remaining > current) {
+                return untilRoll + HOUR_NANOS;
+            }
+            return untilRoll + Math.max(1, remaining * HOUR_NANOS / current);
+        }
+
+        void refundHour(long now) {
+            int index = hourIndex(now);
+            while (true) {
+                long packed = hour.get();
+                if ((int) (packed >>> 32) != index || currentCount(packed) == 0) {
+                    return;
+                }
+                if (hour.compareAndSet(packed, packed - 1)) {
+                    return;
+                }
+            }
+        }
+
+        boolean isIdle(long now) {
+            if (tat.get() - now > 0) {
+                return false;
+            }
+            long rolled = roll(hour.get(), hourIndex(now));
+            return previousCount(rolled) == 0 && currentCount(rolled) == 0;
+        }
+
+        // Moves the buckets forward to the given hour
+        private static long roll(long packed, int index) {
+            int stored = (int) (packed >>> 32);
+            if (stored == index) {
+                return packed;
+            }
+            long previous = index - stored == 1 ? currentCount(packed) : 0;
+            return pack(index, previous, 0);
+        }
+
+        private static int hourIndex(long now) {
+            return (int) Math.floorDiv(now, HOUR_NANOS);
+        }
+
+        private static long pack(int index, long previous, long current) {
+            return ((long) index << 32) | (previous << 16) | current;
+        }
+
+        private static long previousCount(long packed) {
+            return (packed >>> 16) & 0xFFFF;
+        }
+
+        private static long currentCount(long packed) {
+            return packed & 0xFFFF;
+        }
+    }
+}
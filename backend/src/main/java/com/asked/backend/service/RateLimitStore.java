@@ -0,0 +1,71 @@
+package com.asked.backend.service;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Backing store for rate-limit counters, so several instances can enforce
+ * one limit between them. Selected with {@code rate.limit.store}
+ * ({@code memory}, the default, or {@code jdbc}).
+ *
+ * Counters are fixed wall-clock windows. {@link RateLimitService} never
+ * calls the store per request: it counts locally and hands the store one
+ * batch of increments per flush (see {@link RateLimitNearCache}).
+ */
+public interface RateLimitStore {
+
+    /**
+     * True when other instances see the same counters. A local-only store
+     * adds nothing to the in-process limiter, so it is not synchronised at all.
+     */
+    boolean isShared();
+
+    /**
+     * Adds each increment (possibly zero or negative) to its counter,
+     * creating missing counters, and returns the resulting totals.
+     */
+    Map<Counter, Long> addAll(Map<Counter, Long> increments);
+
+    /** Deletes counters whose window ended before {@code now} (epoch millis). */
+    int deleteExpired(long now);
+
+    final class Counter {
+        private final String key;
+        private final long windowStart;
+        private final long windowMs;
+
+        public Counter(String key, long windowStart, long windowMs) {
+            this.key = key;
+            this.windowStart = windowStart;
+            this.windowMs = windowMs;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getWindowStart() {
+            return windowStart;
+        }
+
+        public long getExpiresAt() {
+            return windowStart + windowMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Counter other)) {
+                return false;
+            }
+            return windowStart == other.windowStart && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, windowStart);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.asked.backend.service;
+
+import com.asked.backend.exception.QuotaExceededException;
+import com.asked.backend.services.TextChunker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-client token budgets for AI calls, so cost is charged by prompt size
+ * rather than by request count.
+ *
+ * Each call reserves an estimate up front (prompt tokens from
+ * {@link TextChunker#estimateTokens} plus {@code ai.quota.completion-tokens}
+ * for the answer) and settles it against the {@code usage} OpenRouter
+ * reports; failed calls give the reservation back. Budgets are per client
+ * key (the same keys {@link RateLimitService} uses) over a rolling window,
+ * approximated with two buckets like the hourly rate limit, so each key is
+ * O(1). Reservations that take a client past {@code ai.quota.degrade-threshold}
+ * of its budget are flagged so the caller can switch to a cheaper model.
+ * At most {@code ai.quota.max-entries} budgets are kept; when full, the least
+ * recently used are evicted, never shared between clients.
+ */
+@Service
+public class TokenQuotaService {
+
+    @Value("${ai.quota.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.quota.window-ms:86400000}")
+    private long windowMs;
+
+    @Value("${ai.quota.anonymous.tokens:50000}")
+    private long anonymousTokens;
+
+    @Value("${ai.quota.user.tokens:250000}")
+    private long userTokens;
+
+    @Value("${ai.quota.completion-tokens:1000}")
+    private int completionTokens;
+
+    @Value("${ai.quota.degrade-threshold:0.8}")
+    private double degradeThreshold;
+
+    @Value("${ai.quota.max-entries:100000}")
+    private int maxEntries;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    private final Object evictionLock = new Object();
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("ai.quota.entries", budgets, Map::size)
+                .description("Clients with a live token budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tokens a single call for {@code content} is expected to use, answer included.
+     */
+    public long estimate(String content) {
+        return TextChunker.estimateTokens(content) + completionTokens;
+    }
+
+    /**
+     * Fails fast when {@code tokens} would not fit the remaining budget, without
+     * reserving anything. Used before fanning a document out into many calls.
+     */
+    public void ensureAvailable(String clientKey, RateLimitService.Tier tier, long tokens) {
+        ensureAvailable(clientKey, tier, tokens, System.currentTimeMillis());
+    }
+
+    void ensureAvailable(String clientKey, RateLimitService.Tier tier, long tokens, long now) {
+        if (!enabled || clientKey == null) {
+            return;
+        }
+        Budget budget = budgets.get(clientKey);
+        long used = budget != null ? budget.used(now, windowMs) : 0;
+        if (used + tokens > limitFor(tier)) {
+            throw exceeded(budget, tier, used, tokens, now);
+        }
+    }
+
+    /**
+     * Reserves {@code tokens} from the client's budget. A null client key is
+     * not metered (internal callers).
+     *
+     * @throws QuotaExceededException when the budget cannot cover the request
+     */
+    public Reservation reserve(String clientKey, RateLimitService.Tier tier, long tokens) {
+        return reserve(clientKey, tier, tokens, System.currentTimeMillis());
+    }
+
+    Reservation reserve(String clientKey, RateLimitService.Tier tier, long tokens, long now) {
+        if (!enabled || clientKey == null) {
+            return new Reservation(null, tier, 0, 0, false);
+        }
+        long limit = limitFor(tier);
+        Budget budget = budget(clientKey, now);
+        long used = budget.tryReserve(tokens, limit, now, windowMs);
+        if (used < 0) {
+            throw exceeded(budget, tier, budget.used(now, windowMs), tokens, now);
+        }
+        boolean nearLimit = used + tokens >= limit * degradeThreshold;
+        return new Reservation(budget, tier, now / windowMs, tokens, nearLimit);
+    }
+
+    private long limitFor(RateLimitService.Tier tier) {
+        return tier == RateLimitService.Tier.USER ? userTokens : anonymousTokens;
+    }
+
+    private Budget budget(String clientKey, long now) {
+        Budget budget = budgets.get(clientKey);
+        if (budget == null) {
+            if (budgets.size() >= maxEntries) {
+                synchronized (evictionLock) {
+                    if (budgets.size() >= maxEntries) {
+                        int evicted = LeastRecentlyUsed.evict(budgets, maxEntries, b -> b.lastUsed);
+                        meterRegistry.counter("ai.quota.evictions", "cause", "capacity").increment(evicted);
+                    }
+                }
+            }
+            budget = budgets.computeIfAbsent(clientKey, k -> new Budget(now, windowMs));
+        }
+        budget.lastUsed = now;
+        return budget;
+    }
+
+    private QuotaExceededException exceeded(Budget budget, RateLimitService.Tier tier, long used,
+                                            long tokens, long now) {
+        meterRegistry.counter("ai.quota.rejected", "tier", tier.name()).increment();
+        long limit = limitFor(tier);
+        long remaining = Math.max(0, limit - used);
+        long retryAfterMs = budget != null ? budget.millisUntilFree(used + tokens - limit, now, windowMs) : windowMs;
+        String message = tokens > limit
+                ? "This request needs about " + tokens + " tokens, more than the whole budget of " + limit
+                : "Token budget exhausted: about " + tokens + " tokens needed, " + remaining + " left";
+        return new QuotaExceededException(message, remaining, limit, Math.max(1, (retryAfterMs + 999) / 1000));
+    }
+
+    /**
+     * Drops budgets with nothing left in either bucket.
+     */
+    @Scheduled(fixedDelayString = "${ai.quota.cleanup-interval-ms:300000}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        budgets.values().removeIf(budget -> budget.used(now, windowMs) == 0);
+    }
+
+    /**
+     * A reservation against one budget. Settle it with the real usage once the
+     * call returns, or release it if the call failed.
+     */
+    public class Reservation {
+        private final Budget budget;
+        private final RateLimitService.Tier tier;
+        // Window the tokens were booked in; corrections go to the same bucket
+        private final long window;
+        private final long reserved;
+        private final boolean nearLimit;
+
+        private Reservation(Budget budget, RateLimitService.Tier tier, long window, long reserved, boolean nearLimit) {
+            this.budget = budget;
+            this.tier = tier;
+            this.window = window;
+            this.reserved = reserved;
+            this.nearLimit = nearLimit;
+        }
+
+        /** True when this call took the client close to its limit; a cheaper model is appropriate. */
+        public boolean isNearLimit() {
+            return nearLimit;
+        }
+
+        /**
+         * Replaces the estimate with the tokens actually used. A negative value
+         * (usage not reported) keeps the estimate.
+         */
+        public void settle(long actualTokens) {
+            if (budget == null) {
+                return;
+            }
+            long charged = actualTokens >= 0 ? actualTokens : reserved;
+            budget.adjust(charged - reserved, window);
+            meterRegistry.counter("ai.quota.tokens", "tier", tier.name()).increment(charged);
+        }
+
+        public void release() {
+            if (budget != null) {
+                budget.adjust(-reserved, window);
+            }
+        }
+    }
+
+    private static final class Budget {
+        private long windowIndex;
+        private long previous;
+        private long current;
+        // Last reservation, for eviction order
+        private volatile long lastUsed;
+
+        Budget(long now, long windowMs) {
+            this.windowIndex = now / windowMs;
+        }
+
+        synchronized long used(long now, long windowMs) {
+            roll(now, windowMs);
+            // The previous window counts for the part of it still inside the rolling window
+            long elapsed = now % windowMs;
+            return previous * (windowMs - elapsed) / windowMs + current;
+        }
+
+        /** Returns the usage before reserving, or -1 if the tokens do not fit. */
+        synchronized long tryReserve(long tokens, long limit, long now, long windowMs) {
+            long used = used(now, windowMs);
+            if (used + tokens > limit) {
+                return -1;
+            }
+            current += tokens;
+            return used;
+        }
+
+        synchronized void adjust(long delta, long window) {
+            if (window == windowIndex) {
+                current = Math.max(0, current + delta);
+            } else if (window == windowIndex - 1) {
+                previous = Math.max(0, previous + delta);
+            }
+            // Older windows no longer count, so there is nothing to correct
+        }
+
+        /** Roughly how long until {@code excess} tokens have aged out of the rolling window. */
+        synchronized long millisUntilFree(long excess, long now, long windowMs) {
+            roll(now, windowMs);
+            long untilRoll = windowMs - now % windowMs;
+            // The previous bucket drains linearly until the next roll...
+            if (previous > 0 && excess * windowMs <= previous * untilRoll) {
+                return excess * windowMs / previous;
+            }
+            // ...after which the current bucket drains the same way
+            long remainingExcess = excess - previous * untilRoll / windowMs;
+            if (current <= 0 || remainingExcess > current) {
+                return untilRoll + windowMs;
+            }
+            return untilRoll + remainingExcess * windowMs / current;
+        }
+
+        private void roll(long now, long windowMs) {
+            long index = now / windowMs;
+            if (index == windowIndex) {
+                return;
+            }
+            previous = index - windowIndex == 1 ? current : 0;
+            current = 0;
+            windowIndex = index;
+        }
+    }
+}
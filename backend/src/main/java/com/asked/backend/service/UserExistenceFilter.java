@@ -0,0 +1,196 @@
+package com.asked.backend.service;
+
+import com.asked.backend.model.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over every username and email in the users table, so most
+ * registrations can skip the existence query.
+ *
+ * A "no" from {@link #mightExist} is definite; a "maybe" means the caller
+ * should ask the database. The unique constraints stay the real guard, so a
+ * missed entry (a user added by another instance since startup) only costs
+ * a constraint violation at insert, never a duplicate. Keys are lower-cased
+ * to cover case-insensitive collations; that can only add false positives.
+ * The filter is built once the application is ready and until then answers
+ * "maybe" for everything.
+ */
+@Service
+public class UserExistenceFilter {
+
+    @Value("${auth.bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.bloom.expected-users:1000000}")
+    private long expectedUsers;
+
+    @Value("${auth.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile Bits bits;
+
+    // Filter being rebuilt; inserts go to it as well so none are lost in the swap
+    private volatile Bits building;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("auth.bloom.fill_ratio", this, filter -> {
+                    Bits current = filter.bits;
+                    return current != null ? current.fillRatio() : 0;
+                })
+                .description("Share of Bloom filter bits set; false positives grow with it")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads every username and email into a fresh filter and swaps it in.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Bits fresh = new Bits(expectedUsers * 2, falsePositiveRate);
+        building = fresh;
+        try {
+            // Keyset batches by id keep each query small however large the table is
+            long lastId = 0;
+            List<UserRepository.Identity> batch;
+            do {
+                batch = userRepository.findTop1000ByIdGreaterThanOrderByIdAsc(lastId);
+                for (UserRepository.Identity user : batch) {
+                    fresh.add(usernameKey(user.getUsername()));
+                    fresh.add(emailKey(user.getEmail()));
+                    lastId = user.getId();
+                }
+            } while (batch.size() == 1000);
+            bits = fresh;
+            meterRegistry.timer("auth.bloom.build").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            // Without a filter every lookup falls through to the database
+            System.err.println("Failed to build user existence filter: " + e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * False only when neither the username nor the email can be taken.
+     */
+    public boolean mightExist(String username, String email) {
+        Bits current = bits;
+        if (current == null) {
+            return true;
+        }
+        boolean maybe = current.mightContain(usernameKey(username)) || current.mightContain(emailKey(email));
+        meterRegistry.counter("auth.bloom.lookups", "result", maybe ? "maybe" : "absent").increment();
+        return maybe;
+    }
+
+    /** Records a newly inserted user. */
+    public void add(String username, String email) {
+        for (Bits target : new Bits[]{bits, building}) {
+            if (target != null) {
+                target.add(usernameKey(username));
+                target.add(emailKey(email));
+            }
+        }
+    }
+
+    private static String usernameKey(String username) {
+        return "u:" + (username != null ? username.toLowerCase(Locale.ROOT) : "");
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + (email != null ? email.toLowerCase(Locale.ROOT) : "");
+    }
+
+    /**
+     * Fixed-size bit set with k probes per key, derived from one 64-bit hash
+     * by double hashing. Lock-free: bits are only ever set.
+     */
+    static final class Bits {
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+
+        Bits(long expectedKeys, double falsePositiveRate) {
+            long n = Math.max(1, expectedKeys);
+            // Optimal size and probe count for n keys at the target rate
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (m + 63) / 64));
+            this.size = (long) words.length() * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        }
+
+        void add(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, size);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = words.get(word);
+                while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                    current = words.get(word);
+                }
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double fillRatio() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return (double) set / size;
+        }
+
+        // FNV-1a over the chars, then the MurmurHash3 finalizer to spread the bits
+        private static long hash(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb93fe53ec31aL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
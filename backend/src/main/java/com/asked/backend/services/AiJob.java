@@ -0,0 +1,177 @@
+package com.asked.backend.services;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * State of one background upload → extract → generate job. Serialized as-is
+ * by the /jobs endpoints; subscribers are notified on every state change.
+ */
+public class AiJob {
+
+    public enum Type {
+        EXTRACT, FLASHCARDS, SUMMARY;
+
+        /**
+         * Parses a request parameter such as "flashcards", returning null when
+         * it does not name a type. "none" means extraction only.
+         */
+        public static Type parse(String value) {
+            if (value == null || value.isBlank() || value.equalsIgnoreCase("none")) {
+                return EXTRACT;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    public enum Status {
+        QUEUED, EXTRACTING, GENERATING, COMPLETED, FAILED;
+
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Type type;
+    private final String filename;
+    // Client key of the submitter; not serialized
+    private final String owner;
+    private final long createdAt = System.currentTimeMillis();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long updatedAt = createdAt;
+    private volatile Integer pageCount;
+    private volatile int chunksCompleted;
+    private volatile int chunksTotal;
+    private volatile String partialResult;
+    private volatile String result;
+    private volatile String error;
+
+    private final List<Consumer<AiJob>> listeners = new CopyOnWriteArrayList<>();
+
+    public AiJob(Type type, String filename, String owner) {
+        this.type = type;
+        this.filename = filename;
+        this.owner = owner;
+    }
+
+    /** True when {@code clientKey} is the client that submitted the job. */
+    public boolean isOwnedBy(String clientKey) {
+        return Objects.equals(owner, clientKey);
+    }
+
+    public void subscribe(Consumer<AiJob> listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Consumer<AiJob> listener) {
+        listeners.remove(listener);
+    }
+
+    // ===================== TRANSITIONS =====================
+
+    void start(Status stage) {
+        status = stage;
+        touch();
+    }
+
+    void extracted(int pageCount) {
+        this.pageCount = pageCount;
+        touch();
+    }
+
+    synchronized void progress(int completed, int total, String partialResult) {
+        // Chunks finish out of order; never move progress backwards
+        if (completed < chunksCompleted) {
+            return;
+        }
+        chunksCompleted = completed;
+        chunksTotal = total;
+        if (partialResult != null) {
+            this.partialResult = partialResult;
+        }
+        touch();
+    }
+
+    void complete(String result) {
+        this.result = result;
+        status = Status.COMPLETED;
+        touch();
+    }
+
+    void fail(String error) {
+        this.error = error;
+        status = Status.FAILED;
+        touch();
+    }
+
+    private void touch() {
+        updatedAt = System.currentTimeMillis();
+        for (Consumer<AiJob> listener : listeners) {
+            try {
+                listener.accept(this);
+            } catch (RuntimeException e) {
+                System.err.println("Job listener failed for " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // ===================== GETTERS =====================
+
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Integer getPageCount() {
+        return pageCount;
+    }
+
+    public int getChunksCompleted() {
+        return chunksCompleted;
+    }
+
+    public int getChunksTotal() {
+        return chunksTotal;
+    }
+
+    public String getPartialResult() {
+        return partialResult;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
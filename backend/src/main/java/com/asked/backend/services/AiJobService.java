@@ -0,0 +1,178 @@
+package com.asked.backend.services;
+
+import com.asked.backend.exception.JobQueueFullException;
+import com.asked.backend.utils.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs upload → extract → generate pipelines in the background.
+ *
+ * Jobs go through a bounded queue in front of a small worker pool; when the
+ * queue is full, submission fails fast with {@link JobQueueFullException}
+ * rather than piling up work. Progress and per-chunk partial results are
+ * published on the {@link AiJob} so clients can poll or subscribe. Finished
+ * jobs are kept for a retention period and then dropped.
+ */
+@Service
+public class AiJobService {
+
+    public static final String DEFAULT_SUMMARY_PROMPT = "Summarize this concisely in 3-4 lines.";
+
+    @Value("${jobs.workers:4}")
+    private int workers;
+
+    @Value("${jobs.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${jobs.retention-ms:3600000}")
+    private long retentionMs;
+
+    @Value("${jobs.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private PdfExtractionService pdfExtractionService;
+
+    @Autowired
+    private ChunkedGenerationService chunkedGenerationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, AiJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                // Workers block on OpenRouter; virtual threads make that wait cheap
+                VirtualThreads.threadFactory("ai-job-", virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        meterRegistry.gauge("jobs.queue.depth", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("jobs.active", executor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("jobs.retained", jobs, Map::size);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a job for an uploaded file and returns immediately.
+     *
+     * @param prompt summary prompt for {@link AiJob.Type#SUMMARY}; null for the default
+     * @param owner  client key of the submitter; only that client can read the job
+     * @throws JobQueueFullException when the queue is full
+     */
+    public AiJob submit(File file, AiJob.Type type, Integer targetCards, Integer maxParallelism,
+                        String prompt, GenerationOptions options, String owner) {
+        AiJob job = new AiJob(type, file.getName(), owner);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, file, targetCards, maxParallelism,
+                    prompt != null && !prompt.isBlank() ? prompt : DEFAULT_SUMMARY_PROMPT, options));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            meterRegistry.counter("jobs.rejected", "type", type.name()).increment();
+            throw new JobQueueFullException("Job queue is full, try again later", retryAfterSeconds);
+        }
+        meterRegistry.counter("jobs.submitted", "type", type.name()).increment();
+        return job;
+    }
+
+    public AiJob get(String id) {
+        return jobs.get(id);
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.cleanup-interval-ms:60000}")
+    void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        jobs.values().removeIf(job -> job.getStatus().isTerminal() && job.getUpdatedAt() < cutoff);
+    }
+
+    private void run(AiJob job, File file, Integer targetCards, Integer maxParallelism,
+                     String prompt, GenerationOptions options) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            job.start(AiJob.Status.EXTRACTING);
+            ExtractedDocument document = pdfExtractionService.extract(file);
+            job.extracted(document.getPageCount());
+
+            switch (job.getType()) {
+                case EXTRACT -> job.complete(null);
+                case FLASHCARDS -> {
+                    job.start(AiJob.Status.GENERATING);
+                    List<String> responses = new ArrayList<>();
+                    job.complete(chunkedGenerationService.generateFlashcards(document.getPages(), targetCards,
+                            maxParallelism, options, (completed, total, result) -> {
+                                String partial = null;
+                                if (result != null) {
+                                    partial = mergePartial(responses, result);
+                                }
+                                job.progress(completed, total, partial);
+                            }));
+                }
+                case SUMMARY -> {
+                    job.start(AiJob.Status.GENERATING);
+                    List<String> partials = new ArrayList<>();
+                    job.complete(chunkedGenerationService.summarize(document.getPages(), prompt, maxParallelism,
+                            options, (completed, total, result) -> {
+                                String partial = null;
+                                if (result != null) {
+                                    synchronized (partials) {
+                                        partials.add(result);
+                                        partial = String.join("\n\n", partials);
+                                    }
+                                }
+                                job.progress(completed, total, partial);
+                            }));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            outcome = "failure";
+            System.err.println("Job " + job.getId() + " failed: " + e.getMessage());
+            job.fail(e.getMessage());
+        } finally {
+            sample.stop(meterRegistry.timer("jobs.duration", "type", job.getType().name(), "outcome", outcome));
+        }
+    }
+
+    // Deck built from the chunks finished so far, so clients can show cards early
+    private String mergePartial(List<String> responses, String result) {
+        synchronized (responses) {
+            responses.add(result);
+            try {
+                return chunkedGenerationService.mergeFlashcards(responses, null);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
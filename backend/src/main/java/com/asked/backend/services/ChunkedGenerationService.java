@@ -0,0 +1,378 @@
+package com.asked.backend.services;
+
+import com.asked.backend.exception.QuotaExceededException;
+import com.asked.backend.service.TokenQuotaService;
+import com.asked.backend.utils.VirtualThreads;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Map-reduce generation for documents that do not fit in one prompt.
+ *
+ * The text is split into token-budgeted chunks (see {@link TextChunker}), each
+ * chunk is sent to the model in parallel with a per-request concurrency cap,
+ * and the partial results are merged: flashcards are parsed, de-duplicated and
+ * trimmed to the requested total; partial summaries are summarized again.
+ * The caller's token budget is checked for the whole first pass before any
+ * chunk is sent, so a large document fails fast instead of half-way.
+ */
+@Service
+public class ChunkedGenerationService {
+
+    private static final Pattern JSON_OBJECT = Pattern.compile("\\{[^{}]*\\}");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String PARTIAL_SUMMARY_PROMPT =
+            "Summarize this section of a longer document. Keep every key fact, definition and number.";
+
+    @Autowired
+    private OpenRouterService openRouterService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private TokenQuotaService quotaService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${openrouter.chunking.max-chunk-tokens:6000}")
+    private int maxChunkTokens;
+
+    @Value("${openrouter.chunking.default-parallelism:4}")
+    private int defaultParallelism;
+
+    @Value("${openrouter.chunking.max-parallelism:8}")
+    private int maxParallelism;
+
+    @Value("${openrouter.chunking.pool-size:16}")
+    private int poolSize;
+
+    @Value("${openrouter.chunking.cards-per-chunk:12}")
+    private int defaultCardsPerChunk;
+
+    // Larger targets are cut to this; every card asked for goes into a chunk prompt
+    @Value("${openrouter.chunking.max-target-cards:200}")
+    private int maxTargetCards;
+
+    // Above this share of failed chunks the result is too incomplete to return
+    @Value("${openrouter.chunking.max-failed-fraction:0.1}")
+    private double maxFailedFraction;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize * 16),
+                // Workers block on OpenRouter; virtual threads make that wait cheap
+                VirtualThreads.threadFactory("ai-chunk-", virtualThreads),
+                // Running on the caller keeps the request bounded instead of failing it
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Checks the generation settings a client sent.
+     *
+     * @return why they are rejected, or null when they are acceptable
+     */
+    public String checkRequest(Integer targetCards, Integer parallelism) {
+        if (targetCards != null && targetCards <= 0) {
+            return "targetCards must be a positive number";
+        }
+        if (parallelism != null && parallelism <= 0) {
+            return "maxParallelism must be a positive number";
+        }
+        return null;
+    }
+
+    public boolean fitsInOnePrompt(String text) {
+        return TextChunker.estimateTokens(text) <= maxChunkTokens;
+    }
+
+    /**
+     * Generates flashcards for the whole text.
+     *
+     * @param targetCards total number of cards wanted, at most {@code openrouter.chunking.max-target-cards},
+     *                    or null for the model's default per chunk
+     * @param parallelism max chunks in flight for this request, or null for the configured default
+     * @return a JSON array of {question, answer} objects; for a single chunk without a
+     *         target the model output is returned unchanged
+     */
+    public String generateFlashcards(List<String> pages, Integer targetCards, Integer parallelism,
+                                     GenerationOptions options) throws IOException {
+        return generateFlashcards(pages, targetCards, parallelism, options, null);
+    }
+
+    /**
+     * As {@link #generateFlashcards(List, Integer, Integer, GenerationOptions)}, reporting
+     * each finished chunk to {@code listener} (may be null) as it completes.
+     */
+    public String generateFlashcards(List<String> pages, Integer targetCards, Integer parallelism,
+                                     GenerationOptions options, ChunkListener listener) throws IOException {
+        if (targetCards != null) {
+            targetCards = Math.min(targetCards, maxTargetCards);
+        }
+        List<String> chunks = TextChunker.chunkPages(pages, maxChunkTokens);
+        if (chunks.isEmpty()) {
+            chunks = List.of("");
+        }
+        ensureQuota(chunks, options);
+        if (chunks.size() == 1 && targetCards == null) {
+            String result = openRouterService.getFlashcardsFromText(chunks.get(0), options);
+            if (listener != null) {
+                listener.onChunk(1, 1, result);
+            }
+            return result;
+        }
+
+        int cardsPerChunk = targetCards != null
+                ? Math.max(1, (targetCards + chunks.size() - 1) / chunks.size())
+                : defaultCardsPerChunk;
+        GenerationOptions chunkOptions = options.copy().setCardCount(cardsPerChunk);
+
+        List<String> responses = mapChunks(chunks, parallelism,
+                chunk -> openRouterService.getFlashcardsFromText(chunk, chunkOptions), listener);
+        return mergeFlashcards(responses, targetCards);
+    }
+
+    /**
+     * Summarizes text of any length: chunks are summarized in parallel and the
+     * partial summaries are combined with the caller's prompt.
+     */
+    public String summarize(String text, String prompt, Integer parallelism, GenerationOptions options) throws IOException {
+        return summarize(text, prompt, parallelism, options, null);
+    }
+
+    /**
+     * As {@link #summarize(String, String, Integer, GenerationOptions)}, reporting each
+     * first-pass partial summary to {@code listener} (may be null).
+     */
+    public String summarize(String text, String prompt, Integer parallelism, GenerationOptions options,
+                            ChunkListener listener) throws IOException {
+        if (fitsInOnePrompt(text)) {
+            return openRouterService.summarizeText(text, prompt, options);
+        }
+        return summarizeChunks(TextChunker.chunk(text, maxChunkTokens), text.length(), prompt, parallelism,
+                options, listener);
+    }
+
+    /**
+     * Summarizes an extracted document page by page: chunks are cut on page
+     * boundaries first, as for flashcards, rather than only on paragraphs.
+     */
+    public String summarize(List<String> pages, String prompt, Integer parallelism, GenerationOptions options,
+                            ChunkListener listener) throws IOException {
+        String text = String.join("", pages);
+        if (fitsInOnePrompt(text)) {
+            return openRouterService.summarizeText(text, prompt, options);
+        }
+        return summarizeChunks(TextChunker.chunkPages(pages, maxChunkTokens), text.length(), prompt, parallelism,
+                options, listener);
+    }
+
+    private String summarizeChunks(List<String> chunks, int textLength, String prompt, Integer parallelism,
+                                   GenerationOptions options, ChunkListener listener) throws IOException {
+        ensureQuota(chunks, options);
+        List<String> partials = mapChunks(chunks, parallelism,
+                chunk -> openRouterService.summarizeText(chunk, PARTIAL_SUMMARY_PROMPT, options), listener);
+
+        // Partial summaries can themselves be too long for very large documents
+        String combined = String.join("\n\n", partials);
+        if (combined.length() >= textLength) {
+            throw new IOException("Summarization failed: partial summaries did not shrink the document");
+        }
+        return summarize(combined, prompt, parallelism, options);
+    }
+
+    private void ensureQuota(List<String> chunks, GenerationOptions options) {
+        long tokens = 0;
+        for (String chunk : chunks) {
+            tokens += quotaService.estimate(chunk);
+        }
+        quotaService.ensureAvailable(options.getQuotaKey(), options.getQuotaTier(), tokens);
+    }
+
+    // ===================== MAP =====================
+
+    @FunctionalInterface
+    private interface ChunkCall {
+        String apply(String chunk) throws IOException;
+    }
+
+    /**
+     * Progress callback, invoked from worker threads once per chunk.
+     * {@code result} is null when that chunk failed.
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        void onChunk(int completed, int total, String result);
+    }
+
+    /**
+     * Runs one call per chunk with at most {@code parallelism} in flight, returning
+     * the successful responses in chunk order. A few failed chunks are skipped
+     * and counted in {@code ai.chunks.failed}; more than
+     * {@code openrouter.chunking.max-failed-fraction} of them fails the whole call.
+     */
+    private List<String> mapChunks(List<String> chunks, Integer parallelism, ChunkCall call,
+                                   ChunkListener listener) throws IOException {
+        int permits = parallelism != null ? Math.min(Math.max(parallelism, 1), maxParallelism) : defaultParallelism;
+        Semaphore inFlight = new Semaphore(permits);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AtomicInteger completed = new AtomicInteger();
+
+        try {
+            for (String chunk : chunks) {
+                inFlight.acquire();
+                CompletableFuture<String> future = new CompletableFuture<>();
+                futures.add(future);
+                executor.execute(() -> {
+                    String result = null;
+                    try {
+                        result = call.apply(chunk);
+                        future.complete(result);
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    } finally {
+                        inFlight.release();
+                        if (listener != null) {
+                            listener.onChunk(completed.incrementAndGet(), chunks.size(), result);
+                        }
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IOException("Interrupted while generating chunks", e);
+        }
+
+        List<String> results = new ArrayList<>();
+        Throwable lastError = null;
+        for (CompletableFuture<String> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while generating chunks", e);
+            } catch (ExecutionException e) {
+                lastError = e.getCause();
+            }
+        }
+
+        int failed = chunks.size() - results.size();
+        if (failed == 0) {
+            return results;
+        }
+        meterRegistry.counter("ai.chunks.failed").increment(failed);
+        if (results.isEmpty() || failed > chunks.size() * maxFailedFraction) {
+            if (lastError instanceof QuotaExceededException quotaExceeded) {
+                throw quotaExceeded;
+            }
+            throw new IOException(failed + " of " + chunks.size() + " chunks failed: "
+                    + lastError.getMessage(), lastError);
+        }
+        return results;
+    }
+
+    // ===================== REDUCE =====================
+
+    /**
+     * Parses flashcards out of each model response, drops near-duplicate
+     * questions and trims to the target. Responses are often wrapped in prose or
+     * code fences, so the array is taken from the first {@code [} to the last
+     * {@code ]}; only when that does not parse are objects pulled out one by one.
+     */
+    String mergeFlashcards(List<String> responses, Integer targetCards) throws IOException {
+        Map<String, ObjectNode> unique = new LinkedHashMap<>();
+
+        for (String response : responses) {
+            for (JsonNode node : cardsIn(response)) {
+                String question = node.path("question").asText("").trim();
+                String answer = node.path("answer").asText("").trim();
+                if (question.isEmpty() || answer.isEmpty()) {
+                    continue;
+                }
+
+                String dedupeKey = NON_WORD.matcher(question.toLowerCase()).replaceAll(" ").trim();
+                if (!unique.containsKey(dedupeKey)) {
+                    ObjectNode card = mapper.createObjectNode();
+                    card.put("question", question);
+                    card.put("answer", answer);
+                    unique.put(dedupeKey, card);
+                }
+            }
+        }
+
+        ArrayNode merged = mapper.createArrayNode();
+        for (ObjectNode card : unique.values()) {
+            if (targetCards != null && merged.size() >= targetCards) {
+                break;
+            }
+            merged.add(card);
+        }
+        return mapper.writeValueAsString(merged);
+    }
+
+    private List<JsonNode> cardsIn(String response) {
+        List<JsonNode> cards = new ArrayList<>();
+        int start = response.indexOf('[');
+        int end = response.lastIndexOf(']');
+        if (start >= 0 && end > start) {
+            try {
+                JsonNode array = mapper.readTree(response.substring(start, end + 1));
+                if (array.isArray()) {
+                    array.forEach(cards::add);
+                    return cards;
+                }
+            } catch (IOException e) {
+                // Malformed somewhere; salvage the objects that do parse
+            }
+        }
+
+        // Lenient fallback: flat objects only, so a card containing braces is lost here
+        Matcher matcher = JSON_OBJECT.matcher(response);
+        while (matcher.find()) {
+            try {
+                cards.add(mapper.readTree(matcher.group()));
+            } catch (IOException e) {
+                // Not a card
+            }
+        }
+        return cards;
+    }
+}
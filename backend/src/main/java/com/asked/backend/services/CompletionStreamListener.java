@@ -0,0 +1,14 @@
+package com.asked.backend.services;
+
+/**
+ * Receives tokens from a streamed OpenRouter completion as they arrive.
+ * Callbacks run on the HTTP client's dispatcher thread, never on a servlet thread.
+ */
+public interface CompletionStreamListener {
+
+    void onToken(String token);
+
+    void onComplete();
+
+    void onError(Throwable error);
+}
@@ -0,0 +1,30 @@
+package com.asked.backend.services;
+
+import java.util.List;
+
+/**
+ * Text of a PDF, one entry per page (index 0 is page 1).
+ */
+public class ExtractedDocument {
+
+    private final List<String> pages;
+
+    public ExtractedDocument(List<String> pages) {
+        this.pages = List.copyOf(pages);
+    }
+
+    public List<String> getPages() {
+        return pages;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Full document text, equivalent to running {@code PDFTextStripper} over every page.
+     */
+    public String getText() {
+        return String.join("", pages);
+    }
+}
@@ -0,0 +1,260 @@
+package com.asked.backend.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.asked.backend.utils.fileStoragePaths.TEXT_CACHE_DIR;
+
+/**
+ * On-disk cache of extracted PDF text, keyed by the SHA-256 of the PDF bytes.
+ *
+ * Each document is stored as gzip-compressed JSON (one string per page) next
+ * to the uploads. A small index maps upload paths to (size, mtime, hash) so
+ * an unchanged file is not even re-hashed. When a file changes, its index
+ * entry is recomputed and the stale text is removed if nothing else uses it;
+ * entries for deleted uploads are pruned at startup and periodically after.
+ * With the cache disabled nothing is written and every file is hashed afresh.
+ */
+@Component
+public class ExtractedTextCache {
+
+    private static final String INDEX_FILE = "index.properties";
+
+    @Value("${pdf.text-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pdf.text-cache.dir:}")
+    private String cacheDir;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        if (cacheDir == null || cacheDir.isBlank()) {
+            cacheDir = TEXT_CACHE_DIR;
+        }
+        if (enabled) {
+            loadIndex();
+            prune();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the SHA-256 of the file's bytes, reusing the indexed value while
+     * the file's size and modification time are unchanged.
+     */
+    public String fingerprint(File file) throws IOException {
+        if (!enabled) {
+            return hash(file);
+        }
+        String path = file.getCanonicalPath();
+        long size = file.length();
+        long modified = file.lastModified();
+
+        IndexEntry entry = index.get(path);
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            return entry.sha256;
+        }
+
+        String sha256 = hash(file);
+        index.put(path, new IndexEntry(size, modified, sha256));
+        if (entry != null && !entry.sha256.equals(sha256)) {
+            removeIfUnreferenced(entry.sha256);
+        }
+        saveIndex();
+        return sha256;
+    }
+
+    public ExtractedDocument get(String sha256, long pdfBytes) {
+        if (!enabled) {
+            return null;
+        }
+
+        Path path = textPath(sha256);
+        if (!Files.exists(path)) {
+            meterRegistry.counter("pdf.text_cache.requests", "result", "miss").increment();
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            List<String> pages = mapper.readValue(in, new TypeReference<List<String>>() {});
+            meterRegistry.counter("pdf.text_cache.requests", "result", "hit").increment();
+            // PDF bytes we did not have to parse
+            meterRegistry.counter("pdf.text_cache.bytes_saved").increment(pdfBytes);
+            return new ExtractedDocument(pages);
+        } catch (IOException e) {
+            System.err.println("Text cache entry " + sha256 + " unreadable, re-extracting: " + e.getMessage());
+            meterRegistry.counter("pdf.text_cache.requests", "result", "miss").increment();
+            return null;
+        }
+    }
+
+    public void put(String sha256, ExtractedDocument document) {
+        if (!enabled) {
+            return;
+        }
+
+        Path path = textPath(sha256);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), sha256, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                mapper.writeValue(out, document.getPages());
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to cache extracted text " + sha256 + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops index entries whose upload no longer exists, along with their text
+     * when no remaining entry shares it.
+     */
+    @Scheduled(fixedDelayString = "${pdf.text-cache.cleanup-interval-ms:3600000}")
+    public void prune() {
+        if (!enabled) {
+            return;
+        }
+        List<IndexEntry> removed = new ArrayList<>();
+        index.entrySet().removeIf(e -> {
+            if (Files.exists(Paths.get(e.getKey()))) {
+                return false;
+            }
+            removed.add(e.getValue());
+            return true;
+        });
+        if (removed.isEmpty()) {
+            return;
+        }
+        removed.forEach(entry -> removeIfUnreferenced(entry.sha256));
+        meterRegistry.counter("pdf.text_cache.pruned").increment(removed.size());
+        saveIndex();
+    }
+
+    private Path textPath(String sha256) {
+        return Paths.get(cacheDir, sha256 + ".json.gz");
+    }
+
+    private void removeIfUnreferenced(String sha256) {
+        boolean referenced = index.values().stream().anyMatch(e -> e.sha256.equals(sha256));
+        if (!referenced) {
+            try {
+                Files.deleteIfExists(textPath(sha256));
+            } catch (IOException e) {
+                System.err.println("Failed to remove stale text cache entry " + sha256 + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private String hash(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ===================== INDEX =====================
+
+    private void loadIndex() {
+        Path path = Paths.get(cacheDir, INDEX_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.err.println("Failed to load text cache index: " + e.getMessage());
+            return;
+        }
+        int skipped = 0;
+        for (String filePath : properties.stringPropertyNames()) {
+            String[] parts = properties.getProperty(filePath).split(",");
+            if (parts.length != 3) {
+                skipped++;
+                continue;
+            }
+            try {
+                index.put(filePath, new IndexEntry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+            } catch (NumberFormatException e) {
+                // A damaged line only costs that upload a re-hash
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            meterRegistry.counter("pdf.text_cache.index_skipped").increment(skipped);
+            System.err.println("Skipped " + skipped + " malformed text cache index entries");
+        }
+    }
+
+    private synchronized void saveIndex() {
+        Properties properties = new Properties();
+        index.forEach((filePath, entry) ->
+                properties.setProperty(filePath, entry.size + "," + entry.modified + "," + entry.sha256));
+        try {
+            Path dir = Paths.get(cacheDir);
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "index", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "Extracted text cache index: path=size,mtime,sha256");
+            }
+            Files.move(tmp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save text cache index: " + e.getMessage());
+        }
+    }
+
+    private static class IndexEntry {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        IndexEntry(long size, long modified, String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+}
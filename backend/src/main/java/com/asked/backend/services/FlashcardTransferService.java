@@ -0,0 +1,346 @@
+package com.asked.backend.services;
+
+import com.asked.backend.model.flashcard;
+import com.asked.backend.model.flashcardRepository;
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Streams a user's whole flashcard library out as NDJSON or CSV, and back in.
+ *
+ * Export reads from a forward-only cursor and writes each row as it
+ * arrives; import parses the body one record at a time and inserts in JDBC
+ * batches, each committed on its own. Neither side holds more than one
+ * batch in memory, so library size does not show up in the heap.
+ */
+@Service
+public class FlashcardTransferService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /** Parses a format name, defaulting to NDJSON; null if the name is unknown. */
+        public static Format parse(String name) {
+            if (name == null || name.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final String[] CSV_COLUMNS = {"id", "question", "answer", "folder"};
+
+    @Value("${flashcards.import.batch-size:1000}")
+    private int batchSize;
+
+    // Longest CSV field accepted; stops an unterminated quote from buffering the whole body
+    @Value("${flashcards.import.max-field-length:65536}")
+    private int maxFieldLength;
+
+    @Autowired
+    private flashcardRepository flashcardRepository;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Writes every card of the user to {@code out}, in id order, and returns
+     * how many were written. The output is flushed but not closed.
+     */
+    @Transactional(readOnly = true)
+    public long export(Long userId, Format format, OutputStream out) throws IOException {
+        long count = 0;
+        try (Stream<flashcardRepository.CardView> cards = flashcardRepository.streamByUserIdOrderByIdAsc(userId)) {
+            if (format == Format.CSV) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(String.join(",", CSV_COLUMNS));
+                writer.write("\r\n");
+                for (flashcardRepository.CardView card : (Iterable<flashcardRepository.CardView>) cards::iterator) {
+                    writeCsvField(writer, String.valueOf(card.id()));
+                    writer.write(',');
+                    writeCsvField(writer, card.question());
+                    writer.write(',');
+                    writeCsvField(writer, card.answer());
+                    writer.write(',');
+                    writeCsvField(writer, card.folder());
+                    writer.write("\r\n");
+                    count++;
+                }
+                writer.flush();
+            } else {
+                JsonGenerator generator = mapper.getFactory().createGenerator(new BufferedOutputStream(out));
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                for (flashcardRepository.CardView card : (Iterable<flashcardRepository.CardView>) cards::iterator) {
+                    generator.writeObject(card);
+                    generator.writeRaw('\n');
+                    count++;
+                }
+                generator.flush();
+            }
+        }
+        meterRegistry.counter("flashcards.exported", "format", format.name()).increment(count);
+        return count;
+    }
+
+    /**
+     * Reads cards from {@code in} and inserts them for the user, a batch at a
+     * time. Ids in the input are ignored; new ids are assigned.
+     *
+     * @return the number of cards imported
+     * @throws MalformedImportException when a record cannot be parsed or has
+     *         no question or answer; the batches before it stay imported
+     */
+    public long importCards(Long userId, Format format, InputStream in) throws IOException {
+        List<flashcard> batch = new ArrayList<>(batchSize);
+        long imported = 0;
+        try {
+            if (format == Format.CSV) {
+                CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8), maxFieldLength);
+                Map<String, Integer> columns = csvHeader(reader.next());
+                List<String> record;
+                while ((record = reader.next()) != null) {
+                    batch.add(card(field(record, columns, "question"), field(record, columns, "answer"),
+                            field(record, columns, "folder")));
+                    imported += flushIfFull(userId, batch);
+                }
+            } else {
+                MappingIterator<flashcardRepository.CardView> records =
+                        mapper.readerFor(flashcardRepository.CardView.class).readValues(in);
+                while (records.hasNextValue()) {
+                    flashcardRepository.CardView card = records.nextValue();
+                    batch.add(card(card.question(), card.answer(), card.folder()));
+                    imported += flushIfFull(userId, batch);
+                }
+            }
+        } catch (IllegalArgumentException | RuntimeJsonMappingException | JacksonException e) {
+            meterRegistry.counter("flashcards.imported", "format", format.name()).increment(imported);
+            throw new MalformedImportException("Invalid " + format.getExtension() + " at card "
+                    + (imported + batch.size() + 1) + ": " + e.getMessage(), imported);
+        }
+        if (!batch.isEmpty()) {
+            flashcardRepository.insertAll(userId, batch);
+            imported += batch.size();
+        }
+        meterRegistry.counter("flashcards.imported", "format", format.name()).increment(imported);
+        return imported;
+    }
+
+    private long flushIfFull(Long userId, List<flashcard> batch) {
+        if (batch.size() < batchSize) {
+            return 0;
+        }
+        flashcardRepository.insertAll(userId, batch);
+        int inserted = batch.size();
+        batch.clear();
+        return inserted;
+    }
+
+    // Thrown as IllegalArgumentException so it is reported like any other malformed record
+    private static flashcard card(String question, String answer, String folder) {
+        if (question == null || question.isBlank()) {
+            throw new IllegalArgumentException("question is required");
+        }
+        if (answer == null || answer.isBlank()) {
+            throw new IllegalArgumentException("answer is required");
+        }
+        return new flashcard(question, answer, null, folder);
+    }
+
+    private static Map<String, Integer> csvHeader(List<String> header) {
+        if (header == null) {
+            throw new IllegalArgumentException("missing header row");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("question") || !columns.containsKey("answer")) {
+            throw new IllegalArgumentException("header needs question and answer columns");
+        }
+        return columns;
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index);
+        return value.isEmpty() && "folder".equals(name) ? null : value;
+    }
+
+    // RFC 4180: quote fields containing a separator, quote or line break; double inner quotes
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Thrown when an import body cannot be parsed. Carries how many cards
+     * were already committed before the bad record.
+     */
+    public static class MalformedImportException extends RuntimeException {
+        private final long imported;
+
+        public MalformedImportException(String message, long imported) {
+            super(message);
+            this.imported = imported;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+    }
+
+    /**
+     * Incremental RFC 4180 reader: one record per call, quoted fields may
+     * span lines.
+     */
+    static final class CsvReader {
+        private final Reader reader;
+        private final int maxFieldLength;
+        private final StringBuilder field = new StringBuilder();
+        private int pending = -2;
+
+        CsvReader(Reader reader, int maxFieldLength) {
+            this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+            this.maxFieldLength = maxFieldLength;
+        }
+
+        /** Next record, or null at end of input. Blank lines are skipped. */
+        List<String> next() throws IOException {
+            List<String> record = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean any = false;
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    if (quoted) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    if (!any) {
+                        return null;
+                    }
+                    record.add(field.toString());
+                    return record;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            append('"');
+                        } else {
+                            quoted = false;
+                            pending = next;
+                        }
+                    } else {
+                        append((char) c);
+                    }
+                    continue;
+                }
+                if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            pending = next;
+                        }
+                    }
+                    if (!any) {
+                        continue;
+                    }
+                    record.add(field.toString());
+                    return record;
+                }
+                any = true;
+                if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    append((char) c);
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        private void append(char c) {
+            if (field.length() >= maxFieldLength) {
+                throw new IllegalArgumentException("field longer than " + maxFieldLength + " characters");
+            }
+            field.append(c);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.asked.backend.services;
+
+import com.asked.backend.service.RateLimitService;
+
+/**
+ * Per-request knobs for {@link OpenRouterService} generations.
+ */
+public class GenerationOptions {
+
+    private boolean bypassCache;
+
+    // Number of flashcards to ask for; null keeps the default prompt
+    private Integer cardCount;
+
+    // Whose token budget pays for the call; null is not metered
+    private String quotaKey;
+    private RateLimitService.Tier quotaTier = RateLimitService.Tier.ANONYMOUS;
+
+    public static GenerationOptions defaults() {
+        return new GenerationOptions();
+    }
+
+    public GenerationOptions copy() {
+        GenerationOptions copy = new GenerationOptions();
+        copy.bypassCache = bypassCache;
+        copy.cardCount = cardCount;
+        copy.quotaKey = quotaKey;
+        copy.quotaTier = quotaTier;
+        return copy;
+    }
+
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+
+    public GenerationOptions setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+        return this;
+    }
+
+    public Integer getCardCount() {
+        return cardCount;
+    }
+
+    public GenerationOptions setCardCount(Integer cardCount) {
+        this.cardCount = cardCount;
+        return this;
+    }
+
+    public String getQuotaKey() {
+        return quotaKey;
+    }
+
+    public RateLimitService.Tier getQuotaTier() {
+        return quotaTier;
+    }
+
+    public GenerationOptions setQuota(String quotaKey, RateLimitService.Tier quotaTier) {
+        this.quotaKey = quotaKey;
+        this.quotaTier = quotaTier != null ? quotaTier : RateLimitService.Tier.ANONYMOUS;
+        return this;
+    }
+}
@@ -0,0 +1,234 @@
+package com.asked.backend.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.asked.backend.utils.fileStoragePaths.LLM_CACHE_DIR;
+
+/**
+ * Content-addressed cache for LLM completions.
+ *
+ * Keys are SHA-256 hashes of (model, prompt template, normalized input), so the
+ * same lecture text pasted twice maps to the same entry. Entries live in a
+ * bounded LRU map and, optionally, as files on disk so they survive restarts.
+ */
+@Component
+public class LlmResponseCache {
+
+    /** Request header that skips the cache lookup (the fresh result is still stored). */
+    public static final String BYPASS_HEADER = "X-Cache-Bypass";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Value("${openrouter.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${openrouter.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${openrouter.cache.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${openrouter.cache.disk.enabled:false}")
+    private boolean diskEnabled;
+
+    @Value("${openrouter.cache.disk.dir:}")
+    private String diskDir;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Map<String, CachedResponse> memory;
+
+    @PostConstruct
+    void init() {
+        if (diskDir == null || diskDir.isBlank()) {
+            diskDir = LLM_CACHE_DIR;
+        }
+        memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > maxEntries) {
+                    recordEviction("size");
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("llm.cache.size", this, cache -> cache.size())
+                .description("Entries in the in-memory LLM response cache")
+                .register(meterRegistry);
+
+        if (enabled && diskEnabled) {
+            purgeExpiredFromDisk();
+        }
+    }
+
+    /**
+     * Builds the cache key. Whitespace runs are collapsed and the text is
+     * Unicode-normalized so trivially different copies of a document collide.
+     */
+    public String key(String model, String promptTemplate, String inputText) {
+        String normalized = inputText == null ? ""
+                : WHITESPACE.matcher(Normalizer.normalize(inputText, Normalizer.Form.NFC)).replaceAll(" ").trim();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((promptTemplate == null ? "" : promptTemplate).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            CachedResponse cached = memory.get(key);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    recordLookup("hit", "memory");
+                    return cached.value;
+                }
+                memory.remove(key);
+                recordEviction("expired");
+            }
+        }
+
+        if (diskEnabled) {
+            String value = readFromDisk(key, now);
+            if (value != null) {
+                recordLookup("hit", "disk");
+                synchronized (this) {
+                    memory.put(key, new CachedResponse(value, now + ttlMs));
+                }
+                return value;
+            }
+        }
+
+        recordLookup("miss", "none");
+        return null;
+    }
+
+    public void put(String key, String value) {
+        if (!enabled || value == null) {
+            return;
+        }
+
+        synchronized (this) {
+            memory.put(key, new CachedResponse(value, System.currentTimeMillis() + ttlMs));
+        }
+        if (diskEnabled) {
+            writeToDisk(key, value);
+        }
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    // ===================== DISK TIER =====================
+
+    private Path diskPath(String key) {
+        // Shard by the first byte of the hash to keep directories small
+        return Paths.get(diskDir, key.substring(0, 2), key + ".txt");
+    }
+
+    private String readFromDisk(String key, long now) {
+        Path path = diskPath(key);
+        try {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            if (Files.getLastModifiedTime(path).toMillis() + ttlMs <= now) {
+                Files.deleteIfExists(path);
+                recordEviction("expired");
+                return null;
+            }
+            return Files.readString(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("LLM cache read failed for " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String value) {
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.writeString(tmp, value, StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("LLM cache write failed for " + key + ": " + e.getMessage());
+        }
+    }
+
+    private void purgeExpiredFromDisk() {
+        Path root = Paths.get(diskDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() <= cutoff) {
+                        Files.delete(file);
+                        recordEviction("expired");
+                    }
+                } catch (IOException e) {
+                    // Best effort: the entry is rechecked on read
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("LLM cache purge failed: " + e.getMessage());
+        }
+    }
+
+    // ===================== METRICS =====================
+
+    private void recordLookup(String result, String tier) {
+        meterRegistry.counter("llm.cache.requests", "result", result, "tier", tier).increment();
+    }
+
+    private void recordEviction(String cause) {
+        meterRegistry.counter("llm.cache.evictions", "cause", cause).increment();
+    }
+
+    private static class CachedResponse {
+        private final String value;
+        private final long expiresAt;
+
+        CachedResponse(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.asked.backend.services;
 
+import com.asked.backend.service.TokenQuotaService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import okhttp3.*;
+import okio.BufferedSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -15,133 +24,343 @@ public class OpenRouterService {
     @Value("${openrouter.api.key}")
     private String apiKey;
 
+    @Value("${openrouter.model:qwen/qwen3-8b-04-28}")
+    private String model;
+
+    // Cheaper model for clients close to their token budget; empty disables degrading
+    @Value("${openrouter.fallback-model:}")
+    private String fallbackModel;
+
+    @Value("${openrouter.referer:https://asked.local}")
+    private String referer;
+
+    @Autowired
+    @Qualifier("openRouterHttpClient")
+    private OkHttpClient httpClient;
+
+    @Autowired
+    @Qualifier("openRouterStreamingClient")
+    private OkHttpClient streamingClient;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LlmResponseCache responseCache;
+
+    @Autowired
+    private TokenQuotaService quotaService;
+
+    private SingleFlight<String, Completion> inFlight;
+
     private static final String API_URL = "https://openrouter.ai/api/v1/chat/completions";
+    private static final MediaType JSON = MediaType.get("application/json");
 
-    public  String getFlashcardsFromText(String inputText) throws IOException {
-        OkHttpClient client = new OkHttpClient();
-        ObjectMapper mapper = new ObjectMapper();
+    private static final String FLASHCARDS_PROMPT = "Generate at least 12 educational flashcards from this content. " +
+            "Each flashcard should be in JSON format with 'question' and 'answer' fields only.";
 
-        String prompt = "Generate at least 12 educational flashcards from this content. " +
-                "Each flashcard should be in JSON format with 'question' and 'answer' fields only.\n\n" + inputText;
+    private static final String FLASHCARDS_COUNT_PROMPT = "Generate %d educational flashcards from this content. " +
+            "Each flashcard should be in JSON format with 'question' and 'answer' fields only. " +
+            "Return the result as a JSON array only.";
 
-        Map<String, Object> message = new HashMap<>();
-        message.put("role", "user");
-        message.put("content", prompt);
+    private static final String QUIZ_PROMPT = "Generate 5 multiple choice quiz questions from the following text. " +
+            "Each question should be in JSON format with fields: 'question', 'options' (as a list), and 'answer'. " +
+            "Return the result as a JSON array only.";
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("model", "qwen/qwen3-8b-04-28");
-        body.put("messages", new Object[]{message});
-        body.put("temperature", 0.7);
+    @PostConstruct
+    void init() {
+        inFlight = new SingleFlight<>("openrouter", meterRegistry);
+    }
 
-        RequestBody requestBody = RequestBody.create(
-                mapper.writeValueAsString(body),
-                MediaType.parse("application/json")
-        );
+    public String getFlashcardsFromText(String inputText) throws IOException {
+        return getFlashcardsFromText(inputText, GenerationOptions.defaults());
+    }
 
-        Request request = new Request.Builder()
-                .url(API_URL)
-                .header("Authorization", "Bearer " + apiKey)
-                .header("HTTP-Referer", "https://your-app-name.com")
-                .header("X-Title", "AskEd")
-                .post(requestBody)
-                .build();
+    public String getFlashcardsFromText(String inputText, GenerationOptions options) throws IOException {
+        String prompt = options.getCardCount() != null
+                ? String.format(FLASHCARDS_COUNT_PROMPT, options.getCardCount())
+                : FLASHCARDS_PROMPT;
+        return generate("flashcards", prompt, inputText, options);
+    }
+
+    public String summarizeText(String inputText, String customPrompt) throws IOException {
+        return summarizeText(inputText, customPrompt, GenerationOptions.defaults());
+    }
+
+    public String summarizeText(String inputText, String customPrompt, GenerationOptions options) throws IOException {
+        return generate("summarize", normalizePrompt(customPrompt), inputText, options);
+    }
+
+    public String generateQuizFromText(String inputText) throws IOException {
+        return generateQuizFromText(inputText, GenerationOptions.defaults());
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful()) {
-                Map<String, Object> resBody = mapper.readValue(response.body().string(), Map.class);
-                String content = (String) ((Map)((Map)((java.util.List) resBody.get("choices")).get(0)).get("message")).get("content");
-                return content;
-            } else {
-                throw new IOException("OpenRouter Error: " + response.body().string());
+    public String generateQuizFromText(String inputText, GenerationOptions options) throws IOException {
+        return generate("quiz", QUIZ_PROMPT, inputText, options);
+    }
+
+    /**
+     * Streams a summary token by token. The call runs on the OkHttp dispatcher,
+     * so this returns immediately; cancel the returned call if the client goes away.
+     * A cached summary is replayed as a single token and no call is made (null is returned).
+     * The token budget is reserved before the call is enqueued and settled when the stream ends.
+     */
+    public Call streamSummary(String inputText, String customPrompt, GenerationOptions options,
+                              CompletionStreamListener listener) throws IOException {
+        String prompt = normalizePrompt(customPrompt);
+        String cacheKey = responseCache.key(model, prompt, inputText);
+        if (!options.isBypassCache()) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                listener.onToken(cached);
+                listener.onComplete();
+                return null;
             }
         }
-    }
 
-    public String summarizeText(String inputText, String customPrompt) throws IOException {
-        OkHttpClient client = new OkHttpClient();
-        ObjectMapper mapper = new ObjectMapper();
+        String content = buildContent(prompt, inputText);
+        TokenQuotaService.Reservation reservation = reserve(content, options);
+        String callModel = modelFor(reservation);
+        Request request = buildRequest(content, true, callModel);
+        Call call = streamingClient.newCall(request);
+        call.enqueue(new StreamingCallback(listener, responseCache.key(callModel, prompt, inputText), reservation));
+        return call;
+    }
 
-        // 🔹 Combine prompt with input
-        String content;
-        if (customPrompt != null && !customPrompt.trim().isEmpty()) {
-            content = customPrompt.trim() + "\n\n" + inputText;
-        } else {
-            content = inputText;
+    /**
+     * Cache-aware generation: looks up (model, prompt, input) first and only
+     * calls OpenRouter on a miss or when the caller asked to bypass the cache.
+     * Identical generations that overlap in time share one upstream call.
+     * Every caller reserves from its own budget before joining, and the model
+     * its reservation picked is part of the flight key, so a degraded answer
+     * is only shared with callers that would have degraded too.
+     */
+    private String generate(String operation, String prompt, String inputText, GenerationOptions options) throws IOException {
+        String cacheKey = responseCache.key(model, prompt, inputText);
+        if (!options.isBypassCache()) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
         }
 
-        // 🔹 Prepare OpenRouter message payload
-        Map<String, Object> message = new HashMap<>();
-        message.put("role", "user");
-        message.put("content", content);
+        String content = buildContent(prompt, inputText);
+        TokenQuotaService.Reservation reservation = reserve(content, options);
+        String callModel = modelFor(reservation);
+        // A degraded answer is cached under the model that produced it
+        String callKey = responseCache.key(callModel, prompt, inputText);
+        Completion completion;
+        try {
+            completion = inFlight.execute(operation + ":" + callKey, () -> {
+                Completion result = chatCompletion(operation, content, callModel);
+                responseCache.put(callKey, result.content);
+                return result;
+            });
+        } catch (IOException | RuntimeException e) {
+            reservation.release();
+            throw e;
+        }
+        reservation.settle(completion.totalTokens);
+        return completion.content;
+    }
 
-        Map<String, Object> body = new HashMap<>();
-        body.put("model", "qwen/qwen3-8b-04-28");
-        body.put("messages", new Object[]{message});
-        body.put("temperature", 0.7);
+    private TokenQuotaService.Reservation reserve(String content, GenerationOptions options) {
+        return quotaService.reserve(options.getQuotaKey(), options.getQuotaTier(), quotaService.estimate(content));
+    }
 
-        RequestBody requestBody = RequestBody.create(
-                mapper.writeValueAsString(body),
-                MediaType.parse("application/json")
-        );
+    private String modelFor(TokenQuotaService.Reservation reservation) {
+        if (reservation.isNearLimit() && !fallbackModel.isBlank()) {
+            meterRegistry.counter("openrouter.degraded").increment();
+            return fallbackModel;
+        }
+        return model;
+    }
 
-        Request request = new Request.Builder()
-                .url("https://openrouter.ai/api/v1/chat/completions")
-                .header("Authorization", "Bearer " + apiKey)
-                .header("HTTP-Referer", "https://asked.local")
-                .header("X-Title", "AskEd")
-                .post(requestBody)
-                .build();
+    private String normalizePrompt(String customPrompt) {
+        return customPrompt != null ? customPrompt.trim() : "";
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful()) {
-                Map<String, Object> resBody = mapper.readValue(response.body().string(), Map.class);
-                return (String) ((Map)((Map)((java.util.List) resBody.get("choices")).get(0)).get("message")).get("content");
-            } else {
-                throw new IOException("OpenRouter Error: " + response.body().string());
-            }
+    private String buildContent(String prompt, String inputText) {
+        // 🔹 Combine prompt with input
+        if (!prompt.isEmpty()) {
+            return prompt + "\n\n" + inputText;
         }
+        return inputText;
     }
 
+    /**
+     * Single request path for every generation: builds the chat payload,
+     * sends it through the shared client and returns the first choice with
+     * the token usage OpenRouter reports.
+     */
+    private Completion chatCompletion(String operation, String content, String callModel) throws IOException {
+        Request request = buildRequest(content, false, callModel);
 
-    public String generateQuizFromText(String inputText) throws IOException {
-        OkHttpClient client = new OkHttpClient();
-        ObjectMapper mapper = new ObjectMapper();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            String responseBody;
+            try (Response response = httpClient.newCall(request).execute()) {
+                responseBody = response.body() != null ? response.body().string() : "";
+                if (!response.isSuccessful()) {
+                    throw new OpenRouterException("OpenRouter Error: " + responseBody);
+                }
+            } catch (OpenRouterException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new IOException("OpenRouter request failed: " + e.getMessage(), e);
+            }
 
-        String prompt = "Generate 5 multiple choice quiz questions from the following text. " +
-                "Each question should be in JSON format with fields: 'question', 'options' (as a list), and 'answer'. " +
-                "Return the result as a JSON array only.\n\n" + inputText;
+            JsonNode root = mapper.readTree(responseBody);
+            JsonNode message = root.path("choices").path(0).path("message");
+            if (!message.path("content").isTextual()) {
+                throw new OpenRouterException("OpenRouter Error: response contained no message content");
+            }
+            outcome = "success";
+            return new Completion(message.path("content").asText(), root.path("usage").path("total_tokens").asLong(-1));
+        } finally {
+            sample.stop(meterRegistry.timer("openrouter.requests", "operation", operation, "outcome", outcome));
+        }
+    }
 
+    private Request buildRequest(String content, boolean stream, String callModel) throws IOException {
         Map<String, Object> message = new HashMap<>();
         message.put("role", "user");
-        message.put("content", prompt);
+        message.put("content", content);
 
         Map<String, Object> body = new HashMap<>();
-        body.put("model", "qwen/qwen3-8b-04-28");
-        body.put("messages", new Object[]{message});
+        body.put("model", callModel);
+        body.put("messages", List.of(message));
         body.put("temperature", 0.7);
+        if (stream) {
+            body.put("stream", true);
+        }
 
-        RequestBody requestBody = RequestBody.create(
-                mapper.writeValueAsString(body),
-                MediaType.parse("application/json")
-        );
+        RequestBody requestBody = RequestBody.create(mapper.writeValueAsBytes(body), JSON);
 
-        Request request = new Request.Builder()
-                .url("https://openrouter.ai/api/v1/chat/completions")
+        return new Request.Builder()
+                .url(API_URL)
                 .header("Authorization", "Bearer " + apiKey)
-                .header("HTTP-Referer", "https://asked.local")
+                .header("HTTP-Referer", referer)
                 .header("X-Title", "AskEd")
                 .post(requestBody)
                 .build();
+    }
+
+    /**
+     * Reads the server-sent event stream ("data: {...}" lines terminated by
+     * "data: [DONE]") and forwards each content delta to the listener.
+     */
+    private class StreamingCallback implements Callback {
+
+        private final CompletionStreamListener listener;
+        private final String cacheKey;
+        private final TokenQuotaService.Reservation reservation;
+        private final StringBuilder completion = new StringBuilder();
+        private final Timer.Sample sample = Timer.start(meterRegistry);
+        private long totalTokens = -1;
+
+        StreamingCallback(CompletionStreamListener listener, String cacheKey, TokenQuotaService.Reservation reservation) {
+            this.listener = listener;
+            this.cacheKey = cacheKey;
+            this.reservation = reservation;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            reservation.release();
+            finish("error");
+            listener.onError(new IOException("OpenRouter request failed: " + e.getMessage(), e));
+        }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful()) {
-                Map<String, Object> resBody = mapper.readValue(response.body().string(), Map.class);
-                return (String) ((Map)((Map)((java.util.List) resBody.get("choices")).get(0)).get("message")).get("content");
-            } else {
-                throw new IOException("OpenRouter Error: " + response.body().string());
+        @Override
+        public void onResponse(Call call, Response response) {
+            try (response) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    String error = response.body() != null ? response.body().string() : "";
+                    throw new OpenRouterException("OpenRouter Error: " + error);
+                }
+
+                BufferedSource source = response.body().source();
+                boolean firstToken = true;
+                boolean done = false;
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    // Blank lines separate events; lines starting with ':' are keep-alive comments
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        done = true;
+                        break;
+                    }
+
+                    JsonNode chunk = mapper.readTree(data);
+                    if (chunk.has("error")) {
+                        throw new OpenRouterException("OpenRouter Error: " + chunk.path("error").path("message").asText());
+                    }
+                    // Usage arrives on the final chunk
+                    if (chunk.path("usage").has("total_tokens")) {
+                        totalTokens = chunk.path("usage").path("total_tokens").asLong();
+                    }
+                    String token = chunk.path("choices").path(0).path("delta").path("content").asText("");
+                    if (!token.isEmpty()) {
+                        if (firstToken) {
+                            sample.stop(meterRegistry.timer("openrouter.stream.first-token"));
+                            firstToken = false;
+                        }
+                        completion.append(token);
+                        listener.onToken(token);
+                    }
+                }
+                // Cut off before [DONE]: the answer is truncated, so it is not cached.
+                // Upstream still worked on it, so the estimate is charged
+                if (!done) {
+                    reservation.settle(-1);
+                    finish("error");
+                    listener.onError(new IOException("OpenRouter stream ended before completion"));
+                    return;
+                }
+                responseCache.put(cacheKey, completion.toString());
+                reservation.settle(totalTokens);
+                finish("success");
+                listener.onComplete();
+            } catch (IOException e) {
+                // Partial streams are charged their estimate
+                if (completion.length() > 0) {
+                    reservation.settle(-1);
+                } else {
+                    reservation.release();
+                }
+                finish("error");
+                listener.onError(e);
             }
         }
+
+        private void finish(String outcome) {
+            meterRegistry.counter("openrouter.stream.completions", "outcome", outcome).increment();
+        }
     }
 
+    private static class Completion {
+        private final String content;
+        // -1 when the response carried no usage
+        private final long totalTokens;
 
+        Completion(String content, long totalTokens) {
+            this.content = content;
+            this.totalTokens = totalTokens;
+        }
+    }
+
+    /** Error reported by OpenRouter itself, as opposed to a transport failure. */
+    private static class OpenRouterException extends IOException {
+        OpenRouterException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,220 @@
+package com.asked.backend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single place where PDFs are turned into text.
+ *
+ * Documents are opened with a mixed memory setting, so stream data beyond a
+ * small in-memory budget goes to a scratch file instead of the heap. Large
+ * documents are split into page ranges that are extracted in parallel on a
+ * bounded pool. Each worker opens its own {@link PDDocument}, because PDFBox
+ * documents are not thread-safe, and strips its whole range in one pass.
+ */
+@Service
+public class PdfExtractionService {
+
+    @Value("${pdf.extraction.pool-size:4}")
+    private int poolSize;
+
+    @Value("${pdf.extraction.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${pdf.extraction.pages-per-task:25}")
+    private int pagesPerTask;
+
+    @Value("${pdf.extraction.max-main-memory-mb:16}")
+    private long maxMainMemoryMb;
+
+    @Value("${pdf.extraction.scratch-dir:}")
+    private String scratchDir;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ExtractedTextCache textCache;
+
+    private ThreadPoolExecutor executor;
+
+    private ThreadPoolExecutor warmExecutor;
+
+    private SingleFlight<String, ExtractedDocument> inFlight;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-extract-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // When the pool is saturated the requesting thread extracts the range itself
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        // Separate from the range pool: a whole-document task waiting on range tasks
+        // in the same pool could otherwise starve it
+        warmExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-warm");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        warmExecutor.allowCoreThreadTimeOut(true);
+        inFlight = new SingleFlight<>("pdf-extraction", meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        warmExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Extracts every page of the file. Text already extracted for the same PDF
+     * bytes is served from {@link ExtractedTextCache} without opening the
+     * document; concurrent requests for the same content share one extraction.
+     */
+    public ExtractedDocument extract(File file) throws IOException {
+        String sha256 = textCache.fingerprint(file);
+        ExtractedDocument cached = textCache.get(sha256, file.length());
+        if (cached != null) {
+            return cached;
+        }
+
+        return inFlight.execute(sha256, () -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                ExtractedDocument document = extractPages(file);
+                meterRegistry.counter("pdf.extraction.pages").increment(document.getPageCount());
+                textCache.put(sha256, document);
+                return document;
+            } finally {
+                sample.stop(meterRegistry.timer("pdf.extraction"));
+            }
+        });
+    }
+
+    /**
+     * Fills the text cache for a freshly uploaded file in the background so the
+     * first /extract or /ai/flashcards call does not pay for parsing. Dropped
+     * silently when the warm-up queue is full.
+     */
+    public void warm(File file) {
+        if (!textCache.isEnabled()) {
+            return;
+        }
+        warmExecutor.execute(() -> {
+            try {
+                extract(file);
+            } catch (IOException e) {
+                System.err.println("Background extraction failed for " + file.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private ExtractedDocument extractPages(File file) throws IOException {
+        int pageCount;
+        try (PDDocument document = load(file)) {
+            pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerTask) {
+                return new ExtractedDocument(extractRange(document, 1, pageCount));
+            }
+        }
+
+        String[] pages = new String[pageCount];
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int start = 1; start <= pageCount; start += pagesPerTask) {
+            int first = start;
+            int last = Math.min(start + pagesPerTask - 1, pageCount);
+            CompletableFuture<Void> task = new CompletableFuture<>();
+            tasks.add(task);
+            executor.execute(() -> {
+                try (PDDocument document = load(file)) {
+                    List<String> range = extractRange(document, first, last);
+                    for (int i = 0; i < range.size(); i++) {
+                        pages[first - 1 + i] = range.get(i);
+                    }
+                    task.complete(null);
+                } catch (Throwable t) {
+                    task.completeExceptionally(t);
+                }
+            });
+        }
+
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting " + file.getName(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause
+                    : new IOException("Failed to extract " + file.getName(), cause);
+        }
+        return new ExtractedDocument(Arrays.asList(pages));
+    }
+
+    /**
+     * One stripper pass over the range, with {@link TextChunker#PAGE_BREAK}
+     * appended after every page so the output splits back into pages. Falls
+     * back to a pass per page when the split does not line up, e.g. a page
+     * without a content stream (PDFBox writes nothing for it) or text that
+     * itself contains a form feed.
+     */
+    private List<String> extractRange(PDDocument document, int first, int last) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(first);
+        stripper.setEndPage(last);
+        String pageEnd = stripper.getPageEnd();
+        stripper.setPageEnd(pageEnd + TextChunker.PAGE_BREAK);
+        String[] split = stripper.getText(document).split(TextChunker.PAGE_BREAK, -1);
+        // Each page is followed by a break, so the last element is what came after the final one
+        if (split.length == last - first + 2 && split[split.length - 1].isEmpty()) {
+            return Arrays.asList(split).subList(0, split.length - 1);
+        }
+
+        meterRegistry.counter("pdf.extraction.page_fallbacks").increment();
+        stripper.setPageEnd(pageEnd);
+        List<String> pages = new ArrayList<>(last - first + 1);
+        for (int page = first; page <= last; page++) {
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            pages.add(stripper.getText(document));
+        }
+        return pages;
+    }
+
+    private PDDocument load(File file) throws IOException {
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(maxMainMemoryMb * 1024 * 1024);
+        if (scratchDir != null && !scratchDir.isBlank()) {
+            memory.setTempDir(new File(scratchDir));
+        }
+        return PDDocument.load(file, memory);
+    }
+}
@@ -0,0 +1,84 @@
+package com.asked.backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses concurrent calls for the same key into one execution.
+ *
+ * The first caller for a key runs the loader; everyone who arrives while it is
+ * still running waits on the same future and receives the same result (or the
+ * same exception). Nothing is remembered once the call finishes - that is the
+ * job of the caches in front of it.
+ */
+public class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter saved;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.saved = Counter.builder("singleflight.saved")
+                .description("Duplicate calls that joined an in-flight execution instead of running")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("singleflight.in_flight", inFlight, ConcurrentHashMap::size)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            saved.increment();
+            return await(existing);
+        }
+
+        try {
+            V value = loader.load();
+            created.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    public double savedCount() {
+        return saved.count();
+    }
+
+    private V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for in-flight request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
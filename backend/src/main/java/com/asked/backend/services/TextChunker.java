@@ -0,0 +1,99 @@
+package com.asked.backend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits extracted document text into prompt-sized chunks.
+ *
+ * Pages are packed together until the token budget is reached; a page that is
+ * too large on its own is split on paragraph boundaries, and a paragraph that
+ * is still too large is split on sentence ends (or hard-cut as a last resort).
+ */
+public class TextChunker {
+
+    /** Page separator used when text is extracted with {@code PDFTextStripper#setPageEnd}. */
+    public static final String PAGE_BREAK = "\f";
+
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+
+    // Rough average for English prose with the Qwen/GPT style tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TextChunker() {}
+
+    /**
+     * Cheap token estimate used for budgeting; good enough to stay clear of the context limit.
+     */
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public static List<String> chunk(String text, int maxTokens) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return chunkPages(List.of(text.split(PAGE_BREAK)), maxTokens);
+    }
+
+    public static List<String> chunkPages(List<String> pages, int maxTokens) {
+        int maxChars = Math.max(1, maxTokens) * CHARS_PER_TOKEN;
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String page : pages) {
+            for (String piece : splitToFit(page.trim(), maxChars)) {
+                if (piece.isEmpty()) {
+                    continue;
+                }
+                if (current.length() > 0 && current.length() + piece.length() + 2 > maxChars) {
+                    chunks.add(current.toString());
+                    current.setLength(0);
+                }
+                if (current.length() > 0) {
+                    current.append("\n\n");
+                }
+                current.append(piece);
+            }
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    private static List<String> splitToFit(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return List.of(text);
+        }
+
+        List<String> pieces = new ArrayList<>();
+        for (String paragraph : PARAGRAPH_BREAK.split(text)) {
+            if (paragraph.length() <= maxChars) {
+                pieces.add(paragraph.trim());
+                continue;
+            }
+            StringBuilder sentenceRun = new StringBuilder();
+            for (String sentence : SENTENCE_END.split(paragraph)) {
+                if (sentenceRun.length() > 0 && sentenceRun.length() + sentence.length() + 1 > maxChars) {
+                    pieces.add(sentenceRun.toString());
+                    sentenceRun.setLength(0);
+                }
+                while (sentence.length() > maxChars) {
+                    pieces.add(sentence.substring(0, maxChars));
+                    sentence = sentence.substring(maxChars);
+                }
+                if (sentenceRun.length() > 0) {
+                    sentenceRun.append(' ');
+                }
+                sentenceRun.append(sentence);
+            }
+            if (sentenceRun.length() > 0) {
+                pieces.add(sentenceRun.toString());
+            }
+        }
+        return pieces;
+    }
+}
@@ -2,17 +2,36 @@ package com.asked.backend.utils;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JwtUtil {
-    
+
     private static final SecretKey SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
     private static final long EXPIRATION_TIME = 86400000; // 24 hours
 
+    // Immutable and thread-safe, so one instance serves every request
+    private static final JwtParser PARSER = Jwts.parserBuilder()
+            .setSigningKey(SECRET_KEY)
+            .build();
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxCacheEntries;
+
+    // SHA-256 of token -> verified subject, valid until the token's exp
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
     public String generateToken(String username) {
         return Jwts.builder()
                 .setSubject(username)
@@ -22,37 +41,94 @@ public class JwtUtil {
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * Parses and verifies the token once.
+     *
+     * @throws JwtException if the signature is invalid or the token has expired
+     */
+    public Claims parseClaims(String token) {
+        return PARSER.parseClaimsJws(token).getBody();
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Returns the subject of a valid, unexpired token, or null. Tokens that
+     * verified before are answered from a bounded cache until they expire,
+     * so repeat requests skip parsing and the HMAC check.
+     */
+    public String validateAndGetUsername(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.username;
+            }
+            verifiedTokens.remove(key);
+        }
+
+        Claims claims;
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            claims = parseClaims(token);
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
         }
+
+        Date expiration = claims.getExpiration();
+        if (expiration != null && claims.getSubject() != null) {
+            if (verifiedTokens.size() >= maxCacheEntries) {
+                evict(now);
+            }
+            verifiedTokens.put(key, new VerifiedToken(claims.getSubject(), expiration.getTime()));
+        }
+        return claims.getSubject();
+    }
+
+    public String extractUsername(String token) {
+        return parseClaims(token).getSubject();
+    }
+
+    public boolean validateToken(String token) {
+        return validateAndGetUsername(token) != null;
     }
 
     public boolean isTokenExpired(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getExpiration().before(new Date());
+            return parseClaims(token).getExpiration().before(new Date());
         } catch (JwtException | IllegalArgumentException e) {
             return true;
         }
     }
-} 
\ No newline at end of file
+
+    // Drops expired entries; if the cache is still full, drops arbitrary ones
+    private void evict(long now) {
+        verifiedTokens.values().removeIf(token -> token.expiresAt <= now);
+        Iterator<String> keys = verifiedTokens.keySet().iterator();
+        while (verifiedTokens.size() >= maxCacheEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class VerifiedToken {
+        private final String username;
+        private final long expiresAt;
+
+        VerifiedToken(String username, long expiresAt) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
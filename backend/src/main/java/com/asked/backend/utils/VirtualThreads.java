@@ -0,0 +1,75 @@
+package com.asked.backend.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories that use virtual threads when running on Java 21+ with
+ * {@code spring.threads.virtual.enabled=true}, and daemon platform threads
+ * otherwise.
+ *
+ * The project still compiles for Java 17, so the Java 21 API is reached
+ * through reflection once at class load.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    private static volatile boolean warned;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            // Java 17: platform threads only
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns a factory naming threads {@code prefix + n}. Virtual threads are
+     * used only when {@code virtual} is set and the JVM supports them.
+     */
+    public static ThreadFactory threadFactory(String prefix, boolean virtual) {
+        if (virtual) {
+            if (isSupported()) {
+                try {
+                    Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+                    return (ThreadFactory) FACTORY.invoke(builder);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Failed to create virtual thread factory", e);
+                }
+            }
+            if (!warned) {
+                warned = true;
+                System.err.println("Virtual threads requested but Java " + Runtime.version().feature()
+                        + " does not support them; using platform threads");
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,6 +2,8 @@ package com.asked.backend.utils;
 
 public class fileStoragePaths {
     public static final String UPLOAD_DIR = System.getProperty("user.dir") + "/uploads/";
+    public static final String TEXT_CACHE_DIR = UPLOAD_DIR + ".text-cache/";
     public static final String FLASHCARDS_DIR = System.getProperty("user.dir") + "/flashcards/";
     public static final String QUIZZES_DIR = System.getProperty("user.dir") + "/quizzes/";
+    public static final String LLM_CACHE_DIR = System.getProperty("user.dir") + "/cache/llm/";
 }
@@ -0,0 +1,104 @@
+package com.asked.backend.config;
+
+import com.asked.backend.model.User;
+import com.asked.backend.model.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomUserDetailsServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private CustomUserDetailsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CustomUserDetailsService();
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "ttlMs", 60000L);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+
+        User alice = new User("alice", "alice@example.com", "hash");
+        ReflectionTestUtils.setField(alice, "id", 42L);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+    }
+
+    @Test
+    void testPrincipalCarriesIdAndIsCached() {
+        UserDetails first = service.loadUserByUsername("alice");
+        UserDetails second = service.loadUserByUsername("alice");
+
+        assertEquals(42L, ((AuthenticatedUser) first).getId());
+        assertEquals("hash", second.getPassword());
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void testErasedCredentialsDoNotLeakIntoCache() {
+        ((AuthenticatedUser) service.loadUserByUsername("alice")).eraseCredentials();
+
+        assertEquals("hash", service.loadUserByUsername("alice").getPassword());
+    }
+
+    @Test
+    void testEvictByIdForcesReload() {
+        service.loadUserByUsername("alice");
+        service.evict(42L);
+        service.loadUserByUsername("alice");
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void testExpiredEntryIsReloaded() {
+        ReflectionTestUtils.setField(service, "ttlMs", 0L);
+
+        service.loadUserByUsername("alice");
+        service.loadUserByUsername("alice");
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void testUnknownUserIsNotCached() {
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("bob"));
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("bob"));
+        verify(userRepository, times(2)).findByUsername("bob");
+    }
+
+    @Test
+    void testListenerEvictsOnlyAfterCommit() {
+        UserPrincipalCacheListener listener = new UserPrincipalCacheListener();
+        ReflectionTestUtils.setField(listener, "userDetailsService", service);
+        User alice = new User("alice", "alice@example.com", "new-hash");
+        ReflectionTestUtils.setField(alice, "id", 42L);
+        service.loadUserByUsername("alice");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            listener.evict(alice);
+            service.loadUserByUsername("alice");
+            verify(userRepository, times(1)).findByUsername("alice");
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        service.loadUserByUsername("alice");
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+}
@@ -0,0 +1,104 @@
+package com.asked.backend.config;
+
+import com.asked.backend.utils.JwtUtil;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Per-request token handling cost in {@link JwtAuthenticationFilter}.
+ *
+ * "before" replays the old path: a fresh parser for extractUsername and
+ * another for validateToken, so two parses and two HMAC checks. "after"
+ * times the filter itself, once with the verified-token cache cold (one
+ * parse with the shared parser) and once warm (cache hit). The user lookup
+ * is stubbed so only token handling is measured.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=JwtFilterBenchmark
+ */
+@Tag("benchmark")
+class JwtFilterBenchmark {
+
+    private static final int WARMUP = 5_000;
+    private static final int ITERATIONS = 50_000;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void filterOverheadPerRequest() throws Exception {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "maxCacheEntries", 10_000);
+        SecretKey key = (SecretKey) ReflectionTestUtils.getField(JwtUtil.class, "SECRET_KEY");
+        String token = jwtUtil.generateToken("benchmark-user");
+
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        UserDetails user = User.withUsername("benchmark-user").password("x").authorities(new ArrayList<>()).build();
+        ReflectionTestUtils.setField(filter, "userDetailsService", new CustomUserDetailsService() {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                return user;
+            }
+        });
+
+        double before = nanosPerOp(() -> {
+            String username = Jwts.parserBuilder().setSigningKey(key).build()
+                    .parseClaimsJws(token).getBody().getSubject();
+            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+            assertNotNull(username);
+        });
+
+        double afterCold = nanosPerOp(() -> {
+            ReflectionTestUtils.invokeMethod(ReflectionTestUtils.getField(jwtUtil, "verifiedTokens"), "clear");
+            runFilter(filter, token);
+        });
+
+        double afterWarm = nanosPerOp(() -> runFilter(filter, token));
+
+        System.out.println();
+        System.out.println("JWT handling per request (" + ITERATIONS + " iterations)");
+        System.out.printf("  before (2 parsers, 2 verifications): %,10.0f ns/op%n", before);
+        System.out.printf("  after, cache miss (filter, 1 parse):  %,10.0f ns/op%n", afterCold);
+        System.out.printf("  after, cache hit (filter):            %,10.0f ns/op%n", afterWarm);
+    }
+
+    private void runFilter(JwtAuthenticationFilter filter, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/db/flashcards");
+        request.addHeader("Authorization", "Bearer " + token);
+        try {
+            filter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        assertEquals("benchmark-user", SecurityContextHolder.getContext().getAuthentication().getName());
+        SecurityContextHolder.clearContext();
+    }
+
+    private double nanosPerOp(Runnable op) {
+        for (int i = 0; i < WARMUP; i++) {
+            op.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            op.run();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
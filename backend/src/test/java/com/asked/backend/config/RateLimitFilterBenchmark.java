@@ -0,0 +1,217 @@
+package com.asked.backend.config;
+
+import com.asked.backend.service.InMemoryRateLimitStore;
+import com.asked.backend.service.RateLimitService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reject-path throughput of {@link RateLimitFilter} under a flood.
+ *
+ * 8 threads send requests from one client that is already over its limit,
+ * so every request is rejected. "before" replays the old rejection (a
+ * HashMap per request, hand-built JSON, written through a Writer);
+ * "after" is the filter's precomputed body and header table. "filter"
+ * runs the whole filter, limiter decision included. Responses are a lean
+ * stub that discards output, so the mock's own header bookkeeping does not
+ * dominate.
+ * Allocation is measured per thread with the HotSpot thread MXBean.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=RateLimitFilterBenchmark
+ */
+@Tag("benchmark")
+class RateLimitFilterBenchmark {
+
+    private static final int THREADS = 8;
+    private static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    @Test
+    void rejectFlood() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "rateLimitService", exhaustedService());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "trustedProxies", 1);
+
+        // Warm up all three paths before measuring
+        flood("warmup", RateLimitFilterBenchmark::legacyRejection, null);
+        flood("warmup", (request, response) -> RateLimitFilter.writeRejection(response, 1_500_000_000L), null);
+        flood("warmup", (request, response) -> filter.doFilterInternal(request, response, new MockFilterChain()), null);
+
+        System.out.println();
+        System.out.printf("%-8s %16s %14s%n", "path", "rejects/s", "bytes/reject");
+        flood("before", RateLimitFilterBenchmark::legacyRejection, System.out);
+        flood("after", (request, response) -> RateLimitFilter.writeRejection(response, 1_500_000_000L), System.out);
+        flood("filter", (request, response) -> filter.doFilterInternal(request, response, new MockFilterChain()), System.out);
+    }
+
+    private RateLimitService exhaustedService() {
+        RateLimitService service = new RateLimitService();
+        ReflectionTestUtils.setField(service, "maxEntries", 100_000);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(service, "store", new InMemoryRateLimitStore());
+        ReflectionTestUtils.invokeMethod(service, "init");
+        while (service.isAllowed("ip:198.51.100.9", "/ai/summarize", RateLimitService.Tier.ANONYMOUS)) {
+            // Use up the burst so the flood is all rejections
+        }
+        return service;
+    }
+
+    private void flood(String name, RejectPath path, PrintStream out) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LongAdder requests = new LongAdder();
+        LongAdder allocated = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread(() -> {
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ai/summarize");
+                request.setRemoteAddr("10.0.0.1");
+                request.addHeader("X-Forwarded-For", "198.51.100.9");
+                LeanResponse response = new LeanResponse();
+                try {
+                    start.await();
+                    long bytesBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    long count = 0;
+                    while (!stop.get()) {
+                        path.reject(request, response);
+                        count++;
+                    }
+                    allocated.add(threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytesBefore);
+                    requests.add(count);
+                    assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        TimeUnit.NANOSECONDS.sleep(DURATION_NANOS);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        if (out != null) {
+            out.printf("%-8s %,16.0f %,14.0f%n", name, requests.sum() / (elapsed / 1e9),
+                    allocated.sum() / (double) requests.sum());
+        }
+    }
+
+    // The rejection as it was written before the precomputed body
+    private static void legacyRejection(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType("application/json");
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Rate limit exceeded");
+        errorResponse.put("message", "Too many requests. Please try again later.");
+        errorResponse.put("timestamp", System.currentTimeMillis());
+
+        StringBuilder json = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : errorResponse.entrySet()) {
+            if (!first) {
+                json.append(",");
+            }
+            json.append("\"").append(entry.getKey()).append("\":\"")
+                .append(entry.getValue()).append("\"");
+            first = false;
+        }
+        json.append("}");
+        response.getWriter().write(json.toString());
+    }
+
+    /** Keeps only the status; headers and body are dropped without buffering. */
+    private static class LeanResponse extends MockHttpServletResponse {
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+        private final PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        private int status;
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+        }
+
+        @Override
+        public void setContentLength(int contentLength) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return writer;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RejectPath {
+        void reject(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception;
+    }
+}
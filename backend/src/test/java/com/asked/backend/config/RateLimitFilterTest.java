@@ -0,0 +1,96 @@
+package com.asked.backend.config;
+
+import com.asked.backend.service.RateLimitService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+
+    private final RateLimitService rateLimitService = mock(RateLimitService.class);
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "rateLimitService", rateLimitService);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "trustedProxies", 1);
+        when(rateLimitService.tryAcquire(anyString(), anyString(), any())).thenReturn(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testClientIpIgnoresForgedForwardedEntries() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("X-Forwarded-For", "6.6.6.6, 203.0.113.7");
+
+        assertEquals("203.0.113.7", filter.getClientIp(request));
+
+        ReflectionTestUtils.setField(filter, "trustedProxies", 0);
+        assertEquals("10.0.0.1", filter.getClientIp(request));
+    }
+
+    @Test
+    void testAuthenticatedUserIsKeyedById() throws Exception {
+        AuthenticatedUser user = new AuthenticatedUser(42L, "alice", "hash");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/db/flashcards"),
+                new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(rateLimitService).tryAcquire("user:42", "/db/flashcards", RateLimitService.Tier.USER);
+    }
+
+    @Test
+    void testRejectedRequestGets429() throws Exception {
+        when(rateLimitService.tryAcquire(anyString(), anyString(), any())).thenReturn(1_500_000_000L);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ai/summarize");
+        request.setRemoteAddr("203.0.113.7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertNull(chain.getRequest());
+        verify(rateLimitService).tryAcquire("ip:203.0.113.7", "/ai/summarize", RateLimitService.Tier.ANONYMOUS);
+
+        // Waits are rounded up to whole seconds
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertEquals("2", response.getHeader("X-RateLimit-Reset"));
+        assertEquals("0", response.getHeader("X-RateLimit-Remaining"));
+        assertEquals("application/json", response.getContentType());
+        assertEquals("{\"error\":\"Rate limit exceeded\",\"message\":\"Too many requests. Please try again later.\"}",
+                response.getContentAsString());
+    }
+
+    @Test
+    void testClientKeyIsExposedWhenLimitingIsDisabled() throws Exception {
+        ReflectionTestUtils.setField(filter, "enabled", false);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ai/summarize");
+        request.setRemoteAddr("203.0.113.7");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals("ip:203.0.113.7", RateLimitFilter.clientKey(request));
+        assertEquals(RateLimitService.Tier.ANONYMOUS, RateLimitFilter.tier(request));
+        verifyNoInteractions(rateLimitService);
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -124,6 +125,28 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.error").value("Username already exists"));
     }
 
+    @Test
+    void testRegisterDuplicateEmail() throws Exception {
+        RegisterRequest first = new RegisterRequest();
+        first.setUsername("firstuser");
+        first.setEmail("shared@example.com");
+        first.setPassword("password123");
+        mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(first)))
+                .andExpect(status().isOk());
+
+        RegisterRequest second = new RegisterRequest();
+        second.setUsername("seconduser");
+        second.setEmail("shared@example.com");
+        second.setPassword("password123");
+        mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(second)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Email already exists"));
+    }
+
     @Test
     void testLoginSuccess() throws Exception {
         // Create user
@@ -143,6 +166,42 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.username").value("testuser"));
     }
 
+    @Test
+    void testLoginRehashesOldCostPasswordInPlace() throws Exception {
+        User user = userRepository.save(new User("oldhash", "old@example.com",
+                new BCryptPasswordEncoder(4).encode("password123")));
+        String oldHash = user.getPassword();
+
+        LoginRequest request = new LoginRequest();
+        request.setUsername("oldhash");
+        request.setPassword("password123");
+        mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        User stored = userRepository.findById(user.getId()).orElseThrow();
+        while (stored.getPassword().equals(oldHash) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            stored = userRepository.findById(user.getId()).orElseThrow();
+        }
+        assertNotEquals(oldHash, stored.getPassword());
+        assertTrue(new BCryptPasswordEncoder().matches("password123", stored.getPassword()));
+        assertEquals("old@example.com", stored.getEmail());
+    }
+
+    @Test
+    void testPasswordRehashSkipsPasswordChangedMeanwhile() {
+        User user = userRepository.save(new User("changed", "changed@example.com", "current-hash"));
+
+        assertEquals(0, userRepository.updatePasswordIfUnchanged(user.getId(), "stale-hash", "rehashed"));
+        assertEquals("current-hash", userRepository.findById(user.getId()).orElseThrow().getPassword());
+
+        assertEquals(1, userRepository.updatePasswordIfUnchanged(user.getId(), "current-hash", "rehashed"));
+        assertEquals("rehashed", userRepository.findById(user.getId()).orElseThrow().getPassword());
+    }
+
     @Test
     void testLoginWithInvalidCredentials() throws Exception {
         LoginRequest request = new LoginRequest();
@@ -0,0 +1,329 @@
+package com.asked.backend.controller;
+
+import com.asked.backend.config.AuthenticatedUser;
+import com.asked.backend.model.User;
+import com.asked.backend.model.UserRepository;
+import com.asked.backend.model.flashcard;
+import com.asked.backend.model.flashcardRepository;
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Statistics count the SQL statements each endpoint sends
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class FlashcardControllerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private flashcardRepository flashcardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private MockMvc mockMvc;
+    private User owner;
+    private User other;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        flashcardRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = userRepository.save(new User("owner", "owner@example.com", "hash"));
+        other = userRepository.save(new User("other", "other@example.com", "hash"));
+
+        List<flashcard> cards = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            cards.add(new flashcard("q" + i, "a" + i, owner, i % 2 == 0 ? "even" : "odd"));
+        }
+        cards.add(new flashcard("not mine", "a", other, "even"));
+        flashcardRepository.saveAll(cards);
+
+        // The MockMvc request runs on this thread, so the handler sees this principal
+        AuthenticatedUser principal = new AuthenticatedUser(owner.getId(), owner.getUsername(), "hash");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        // Cards reference users; leave no rows that would block other tests' cleanup
+        flashcardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testPagesFollowCursorUntilExhausted() throws Exception {
+        MvcResult first = mockMvc.perform(get("/db/flashcards").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].question").value("q0"))
+                .andExpect(jsonPath("$[0].user").doesNotExist())
+                .andExpect(header().exists(flashcardController.NEXT_CURSOR_HEADER))
+                .andReturn();
+        String cursor = first.getResponse().getHeader(flashcardController.NEXT_CURSOR_HEADER);
+
+        MvcResult second = mockMvc.perform(get("/db/flashcards").param("size", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].question").value("q2"))
+                .andReturn();
+        cursor = second.getResponse().getHeader(flashcardController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/db/flashcards").param("size", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].question").value("q4"))
+                .andExpect(header().doesNotExist(flashcardController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testBulkSaveReturnsIdsInOrder() throws Exception {
+        MvcResult result = mockMvc.perform(post("/db/flashcards")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"question\":\"n1\",\"answer\":\"a1\",\"folder\":\"new\"},"
+                                + "{\"question\":\"n2\",\"answer\":\"a2\",\"folder\":\"new\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.saved").value(2))
+                .andExpect(jsonPath("$.ids", hasSize(2)))
+                .andExpect(jsonPath("$[0].question").doesNotExist())
+                .andReturn();
+
+        List<Number> ids = JsonPath.read(result.getResponse().getContentAsString(), "$.ids");
+        flashcard first = flashcardRepository.findById(ids.get(0).longValue()).orElseThrow();
+        flashcard second = flashcardRepository.findById(ids.get(1).longValue()).orElseThrow();
+        assertEquals("n1", first.getQuestion());
+        assertEquals("n2", second.getQuestion());
+        assertEquals(owner.getId(), first.getUser().getId());
+        assertEquals("new", second.getFolder());
+    }
+
+    @Test
+    void testOtherUsersCardIsNotFound() throws Exception {
+        Long foreignId = foreignCardId();
+
+        mockMvc.perform(get("/db/flashcards/" + foreignId))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/db/flashcards/" + foreignId))
+                .andExpect(status().isNotFound());
+        assertTrue(flashcardRepository.existsById(foreignId));
+    }
+
+    @Test
+    void testEachEndpointSendsOneStatement() throws Exception {
+        Long ownId = flashcardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(owner.getId(), 0L,
+                Limit.of(1)).get(0).id();
+        Long foreignId = foreignCardId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        mockMvc.perform(get("/db/flashcards").param("size", "2")).andExpect(status().isOk());
+        assertEquals(1, statistics.getPrepareStatementCount(), "list page");
+
+        statistics.clear();
+        mockMvc.perform(get("/db/flashcards/" + ownId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.question").value("q0"));
+        assertEquals(1, statistics.getPrepareStatementCount(), "get by id");
+
+        statistics.clear();
+        mockMvc.perform(get("/db/flashcards/" + foreignId)).andExpect(status().isNotFound());
+        assertEquals(1, statistics.getPrepareStatementCount(), "get someone else's card");
+
+        statistics.clear();
+        mockMvc.perform(delete("/db/flashcards/" + ownId)).andExpect(status().isOk());
+        assertEquals(1, statistics.getPrepareStatementCount(), "delete");
+        assertFalse(flashcardRepository.existsById(ownId));
+    }
+
+    @Test
+    void testBulkDeleteSkipsOtherUsersCards() throws Exception {
+        List<Long> ownIds = flashcardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(owner.getId(), 0L,
+                Limit.of(2)).stream().map(card -> card.id()).toList();
+        Long foreignId = foreignCardId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        mockMvc.perform(post("/db/flashcards/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + ownIds.get(0) + "," + ownIds.get(1) + "," + foreignId + ",999999]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(2));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(flashcardRepository.existsById(foreignId));
+        assertEquals(3, flashcardRepository.findByUserId(owner.getId()).size());
+    }
+
+    @Test
+    void testDeleteFolderOnlyTouchesOwnCards() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        mockMvc.perform(delete("/db/flashcards/folder").param("name", "even"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(3));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2, flashcardRepository.findByUserId(owner.getId()).size());
+        assertEquals(1, flashcardRepository.findByUserId(other.getId()).size());
+    }
+
+    @Test
+    void testMoveFolderRenamesOwnCards() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        mockMvc.perform(put("/db/flashcards/folder").param("name", "even").param("to", "renamed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.moved").value(3));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        mockMvc.perform(get("/db/flashcards").param("folder", "renamed"))
+                .andExpect(jsonPath("$", hasSize(3)));
+        assertEquals("even", flashcardRepository.findByUserId(other.getId()).get(0).getFolder());
+    }
+
+    @Test
+    void testEmptyFolderNameSelectsUnfiledCards() throws Exception {
+        flashcardRepository.saveAll(List.of(new flashcard("u1", "a", owner, null), new flashcard("u2", "a", owner, null),
+                new flashcard("u3", "a", owner, null), new flashcard("foreign", "a", other, null)));
+
+        mockMvc.perform(put("/db/flashcards/folder").param("name", "").param("to", "filed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.moved").value(3));
+        mockMvc.perform(get("/db/flashcards").param("folder", "filed"))
+                .andExpect(jsonPath("$", hasSize(3)));
+
+        flashcardRepository.save(new flashcard("u4", "a", owner, null));
+        mockMvc.perform(delete("/db/flashcards/folder").param("name", ""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1));
+        // Named folders and other users' unfiled cards are untouched
+        assertEquals(8, flashcardRepository.findByUserId(owner.getId()).size());
+        assertEquals(2, flashcardRepository.findByUserId(other.getId()).size());
+    }
+
+    @Test
+    void testExportsNdjsonInIdOrder() throws Exception {
+        String body = mockMvc.perform(get("/db/flashcards/export"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("q0", JsonPath.read(lines[0], "$.question"));
+        assertEquals("odd", JsonPath.read(lines[1], "$.folder"));
+    }
+
+    @Test
+    void testCsvRoundTripKeepsQuotesCommasAndNewlines() throws Exception {
+        flashcardRepository.insertAll(owner.getId(), List.of(
+                new flashcard("What is \"x\", really?", "line one\nline two", null, "tricky")));
+
+        String csv = mockMvc.perform(get("/db/flashcards/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(csv.startsWith("id,question,answer,folder\r\n"));
+
+        flashcardRepository.deleteAll();
+        mockMvc.perform(post("/db/flashcards/import").param("format", "csv")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(6));
+
+        mockMvc.perform(get("/db/flashcards").param("folder", "tricky"))
+                .andExpect(jsonPath("$[0].question").value("What is \"x\", really?"))
+                .andExpect(jsonPath("$[0].answer").value("line one\nline two"));
+        mockMvc.perform(get("/db/flashcards").param("folder", "odd"))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void testImportReportsCardsCommittedBeforeBadRecord() throws Exception {
+        mockMvc.perform(post("/db/flashcards/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"question\":\"i1\",\"answer\":\"a1\"}\n{\"question\":"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Import failed"))
+                .andExpect(jsonPath("$.imported").value(0));
+
+        mockMvc.perform(post("/db/flashcards/import").param("format", "xml").content("<cards/>"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testImportRejectsCardsWithoutQuestionOrAnswer() throws Exception {
+        mockMvc.perform(post("/db/flashcards/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"question\":\"i1\",\"answer\":\"a1\"}\n{\"question\":\"i2\"}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid ndjson at card 2: answer is required"));
+
+        mockMvc.perform(post("/db/flashcards/import").param("format", "csv")
+                        .contentType("text/csv")
+                        .content("question,answer\r\nq1,a1\r\nq2,a2\r\n  ,a3\r\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid csv at card 3: question is required"));
+        assertEquals(5, flashcardRepository.findByUserId(owner.getId()).size());
+    }
+
+    private Long foreignCardId() {
+        return flashcardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(other.getId(), 0L, Limit.of(1))
+                .get(0).id();
+    }
+
+    @Test
+    void testFiltersByFolderAndOwner() throws Exception {
+        mockMvc.perform(get("/db/flashcards").param("folder", "even"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[*].folder").value(everyItem(is("even"))))
+                .andExpect(header().doesNotExist(flashcardController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testDefaultPageReturnsAllSmallDecks() throws Exception {
+        mockMvc.perform(get("/db/flashcards"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(header().doesNotExist(flashcardController.NEXT_CURSOR_HEADER));
+    }
+}
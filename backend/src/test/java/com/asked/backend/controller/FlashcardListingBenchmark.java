@@ -0,0 +1,128 @@
+package com.asked.backend.controller;
+
+import com.asked.backend.model.User;
+import com.asked.backend.model.UserRepository;
+import com.asked.backend.model.flashcardRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cost of listing a 100k-card deck, old and new.
+ *
+ * "all entities" is the old GET /db/flashcards: every card of the user as
+ * a managed entity, serialized in one response. The keyset rows read
+ * record projections: the first page, a page deep in the deck (same cost, unlike
+ * OFFSET), and a walk over every page. Each row reports the median time of
+ * several runs and the bytes allocated per run, serialization included.
+ * The database is the in-memory H2 of the test profile, so times show the
+ * JVM side, not network or disk.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=FlashcardListingBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "logging.level.com.asked.backend=INFO",
+        "logging.level.org.springframework=WARN"})
+@ActiveProfiles("test")
+class FlashcardListingBenchmark {
+
+    private static final int CARDS = 100_000;
+    private static final int PAGE = 100;
+    private static final int RUNS = 7;
+
+    @Autowired
+    private flashcardRepository flashcardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void listDeck() throws Exception {
+        flashcardRepository.deleteAll();
+        userRepository.deleteAll();
+        Long userId = userRepository.save(new User("power", "power@example.com", "hash")).getId();
+
+        List<Object[]> rows = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            rows.add(new Object[]{"Question " + i + " about a moderately long topic?",
+                    "Answer " + i + " with a sentence or two of explanation.", userId, "folder-" + (i % 20)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO \"flashcard\" (\"question\", \"answer\", \"user_id\", \"folder\") "
+                + "VALUES (?, ?, ?, ?)", rows);
+        long deepCursor = jdbcTemplate.queryForObject("SELECT MIN(\"id\") FROM \"flashcard\"", Long.class) + 90_000;
+
+        System.out.println();
+        System.out.printf("%-16s %8s %12s %14s%n", "query", "rows", "median ms", "alloc MB");
+        measure("all entities", () -> serialize(flashcardRepository.findByUserId(userId)));
+        measure("keyset first", () -> serialize(flashcardRepository
+                .findByUserIdAndIdGreaterThanOrderByIdAsc(userId, 0L, Limit.of(PAGE))));
+        measure("keyset at 90k", () -> serialize(flashcardRepository
+                .findByUserIdAndIdGreaterThanOrderByIdAsc(userId, deepCursor, Limit.of(PAGE))));
+        measure("keyset walk", () -> {
+            int total = 0;
+            long cursor = 0;
+            List<flashcardRepository.CardView> page;
+            do {
+                page = flashcardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, cursor, Limit.of(1000));
+                serialize(page);
+                total += page.size();
+                if (!page.isEmpty()) {
+                    cursor = page.get(page.size() - 1).id();
+                }
+            } while (page.size() == 1000);
+            return total;
+        });
+
+        flashcardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private int serialize(List<?> cards) throws Exception {
+        objectMapper.writeValueAsBytes(cards);
+        return cards.size();
+    }
+
+    private void measure(String name, Callable<Integer> query) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // Warm up
+        query.call();
+        query.call();
+
+        long[] nanos = new long[RUNS];
+        long allocated = 0;
+        int rows = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            rows = query.call();
+            nanos[i] = System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-16s %8d %12.2f %14.2f%n", name, rows, nanos[RUNS / 2] / 1e6,
+                allocated / (double) RUNS / (1 << 20));
+        if (name.startsWith("all") || name.endsWith("walk")) {
+            assertEquals(CARDS, rows);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.asked.backend.controller;
+
+import com.asked.backend.model.User;
+import com.asked.backend.model.UserRepository;
+import com.asked.backend.model.flashcard;
+import com.asked.backend.model.flashcardRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Saving an AI-generated deck, old and new.
+ *
+ * "saveAll" is the old POST /db/flashcards path: entities with IDENTITY
+ * ids, one INSERT per card. "insertAll" is the JDBC batch fragment. Each
+ * row is the median of several saves of a fresh deck. The database is the
+ * test profile's in-memory H2 in MySQL mode, so the gap shown is statement
+ * overhead only; over a network every saved round trip adds latency on top.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=FlashcardSaveBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "logging.level.com.asked.backend=INFO",
+        "logging.level.org.springframework=WARN"})
+@ActiveProfiles("test")
+class FlashcardSaveBenchmark {
+
+    private static final int RUNS = 9;
+
+    @Autowired
+    private flashcardRepository flashcardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void saveDeck() {
+        flashcardRepository.deleteAll();
+        userRepository.deleteAll();
+        User user = userRepository.save(new User("saver", "saver@example.com", "hash"));
+
+        System.out.println();
+        System.out.printf("%-10s %8s %12s %14s%n", "path", "cards", "median ms", "cards/s");
+        for (int cards : new int[]{50, 500, 5000}) {
+            measure("saveAll", cards, () -> {
+                List<flashcard> deck = deck(cards);
+                deck.forEach(card -> card.setUser(user));
+                assertEquals(cards, flashcardRepository.saveAll(deck).size());
+            });
+            measure("insertAll", cards, () ->
+                    assertEquals(cards, flashcardRepository.insertAll(user.getId(), deck(cards)).size()));
+        }
+
+        flashcardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private static List<flashcard> deck(int cards) {
+        List<flashcard> deck = new ArrayList<>(cards);
+        for (int i = 0; i < cards; i++) {
+            deck.add(new flashcard("Question " + i + " about a moderately long topic?",
+                    "Answer " + i + " with a sentence or two of explanation.", null, "generated"));
+        }
+        return deck;
+    }
+
+    private void measure(String name, int cards, Runnable save) {
+        // Warm up
+        save.run();
+        save.run();
+
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            save.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        long median = nanos[RUNS / 2];
+        System.out.printf("%-10s %8d %12.2f %,14.0f%n", name, cards, median / 1e6, cards / (median / 1e9));
+    }
+}
@@ -0,0 +1,57 @@
+package com.asked.backend.controller;
+
+import com.asked.backend.config.RateLimitFilter;
+import com.asked.backend.services.AiJob;
+import com.asked.backend.services.AiJobService;
+import com.asked.backend.services.GenerationOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.File;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JobControllerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private AiJobService aiJobService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    void testJobIsOnlyVisibleToItsSubmitter() throws Exception {
+        AiJob job = aiJobService.submit(new File("missing.pdf"), AiJob.Type.EXTRACT, null, null, null,
+                GenerationOptions.defaults(), "ip:10.0.0.1");
+
+        mockMvc.perform(get("/jobs/" + job.getId())
+                        .requestAttr(RateLimitFilter.CLIENT_KEY_ATTRIBUTE, "ip:10.0.0.1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(job.getId()));
+
+        // Same response as for an id that never existed
+        mockMvc.perform(get("/jobs/" + job.getId())
+                        .requestAttr(RateLimitFilter.CLIENT_KEY_ATTRIBUTE, "ip:10.0.0.2"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Job not found"));
+        mockMvc.perform(get("/jobs/" + job.getId() + "/events")
+                        .requestAttr(RateLimitFilter.CLIENT_KEY_ATTRIBUTE, "user:42"))
+                .andExpect(status().isNotFound());
+    }
+}
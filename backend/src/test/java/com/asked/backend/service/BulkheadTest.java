@@ -0,0 +1,68 @@
+package com.asked.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testRejectsImmediatelyWhenQueueIsFull() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("ai", 1, 0, 1000, meterRegistry);
+
+        assertTrue(bulkhead.tryAcquire());
+        long start = System.nanoTime();
+        assertFalse(bulkhead.tryAcquire());
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertEquals(1.0, meterRegistry.counter("bulkhead.rejected", "group", "ai", "reason", "queue_full").count());
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+    }
+
+    @Test
+    void testQueuedRequestTimesOut() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("crud", 1, 5, 50, meterRegistry);
+
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+
+        assertEquals(1.0, meterRegistry.counter("bulkhead.rejected", "group", "crud", "reason", "timeout").count());
+        assertEquals(0, bulkhead.getQueueDepth());
+    }
+
+    @Test
+    void testQueuedRequestGetsReleasedSlot() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("auth", 1, 5, 5000, meterRegistry);
+        assertTrue(bulkhead.tryAcquire());
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                acquired.set(bulkhead.tryAcquire());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        waiter.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bulkhead.getQueueDepth() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1.0, meterRegistry.get("bulkhead.queue.depth").tag("group", "auth").gauge().value());
+
+        bulkhead.release();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+    }
+}
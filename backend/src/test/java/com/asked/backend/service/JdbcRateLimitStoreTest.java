@@ -0,0 +1,72 @@
+package com.asked.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRateLimitStoreTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+    }
+
+    @Test
+    void testInstancesShareCounters() {
+        JdbcRateLimitStore first = store();
+        JdbcRateLimitStore second = store();
+        RateLimitStore.Counter counter = new RateLimitStore.Counter("m ip:1 /ai/summarize", 0, MINUTE);
+
+        assertEquals(3L, first.addAll(Map.of(counter, 3L)).get(counter));
+        assertEquals(5L, second.addAll(Map.of(counter, 2L)).get(counter));
+        // A zero increment only reads the total
+        assertEquals(5L, first.addAll(Map.of(counter, 0L)).get(counter));
+        assertEquals(4L, first.addAll(Map.of(counter, -1L)).get(counter));
+    }
+
+    @Test
+    void testWindowsAndLongKeysAreSeparateCounters() {
+        JdbcRateLimitStore store = store();
+        String longKey = "m ip:1 /" + "x".repeat(300);
+        RateLimitStore.Counter current = new RateLimitStore.Counter(longKey, MINUTE, MINUTE);
+        RateLimitStore.Counter previous = new RateLimitStore.Counter(longKey, 0, MINUTE);
+        RateLimitStore.Counter other = new RateLimitStore.Counter(longKey + "y", MINUTE, MINUTE);
+
+        Map<RateLimitStore.Counter, Long> totals = store.addAll(Map.of(current, 1L, previous, 2L, other, 3L));
+
+        assertEquals(1L, totals.get(current));
+        assertEquals(2L, totals.get(previous));
+        assertEquals(3L, totals.get(other));
+    }
+
+    @Test
+    void testDeleteExpired() {
+        JdbcRateLimitStore store = store();
+        RateLimitStore.Counter expired = new RateLimitStore.Counter("a", 0, MINUTE);
+        RateLimitStore.Counter live = new RateLimitStore.Counter("b", MINUTE, MINUTE);
+        store.addAll(Map.of(expired, 1L, live, 1L));
+
+        assertEquals(1, store.deleteExpired(MINUTE));
+        assertEquals(1L, store.addAll(Map.of(live, 0L)).get(live));
+        assertNull(store.addAll(Map.of(expired, 0L)).get(expired));
+    }
+
+    private JdbcRateLimitStore store() {
+        JdbcRateLimitStore store = new JdbcRateLimitStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        store.init();
+        return store;
+    }
+}
@@ -0,0 +1,128 @@
+package com.asked.backend.service;
+
+import com.asked.backend.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private PasswordHashingService create(BCryptPasswordEncoder encoder, int threads, int queueCapacity, long timeoutMs) {
+        PasswordHashingService created = new PasswordHashingService();
+        ReflectionTestUtils.setField(created, "threads", threads);
+        ReflectionTestUtils.setField(created, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(created, "timeoutMs", timeoutMs);
+        ReflectionTestUtils.setField(created, "retryAfterSeconds", 2L);
+        ReflectionTestUtils.setField(created, "passwordEncoder", encoder);
+        ReflectionTestUtils.setField(created, "meterRegistry", meterRegistry);
+        created.init();
+        return created;
+    }
+
+    @Test
+    void testEncodeAndMatchOnPool() {
+        service = create(new BCryptPasswordEncoder(4), 2, 4, 5000);
+
+        String hash = service.encode("password123");
+
+        assertTrue(service.matches("password123", hash));
+        assertFalse(service.matches("wrong", hash));
+        assertEquals(1, meterRegistry.timer("auth.password.hash", "operation", "encode").count());
+        assertEquals(2, meterRegistry.timer("auth.password.hash", "operation", "matches").count());
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service = create(blockingEncoder(started, release), 1, 1, 5000);
+
+        // One hash running, one queued: the pool is full
+        Thread running = new Thread(() -> service.encode("first"));
+        running.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread queued = new Thread(() -> service.encode("second"));
+        queued.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("auth.password.queue.depth").gauge().value() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        long start = System.nanoTime();
+        ServiceBusyException e = assertThrows(ServiceBusyException.class, () -> service.encode("third"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertEquals(2, e.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.counter("auth.password.rejected",
+                "operation", "encode", "cause", "queue_full").count());
+
+        release.countDown();
+        running.join();
+        queued.join();
+    }
+
+    @Test
+    void testGivesUpAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        service = create(blockingEncoder(new CountDownLatch(1), release), 1, 4, 50);
+
+        assertThrows(ServiceBusyException.class, () -> service.encode("slow"));
+        assertEquals(1.0, meterRegistry.counter("auth.password.rejected",
+                "operation", "encode", "cause", "timeout").count());
+        release.countDown();
+    }
+
+    @Test
+    void testUpgradesHashFromLowerCost() throws Exception {
+        String oldHash = new BCryptPasswordEncoder(4).encode("password123");
+        service = create(new BCryptPasswordEncoder(5), 1, 4, 5000);
+
+        assertTrue(service.needsUpgrade(oldHash));
+
+        AtomicReference<String> upgraded = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.upgradeLater("password123", hash -> {
+            upgraded.set(hash);
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(upgraded.get().startsWith("$2a$05$"));
+        assertFalse(service.needsUpgrade(upgraded.get()));
+        assertTrue(service.matches("password123", upgraded.get()));
+    }
+
+    // Encoder whose hashes block until released, to hold pool threads busy
+    private static BCryptPasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+    }
+}
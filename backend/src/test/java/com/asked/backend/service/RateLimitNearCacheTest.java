@@ -0,0 +1,79 @@
+package com.asked.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitNearCacheTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final RateLimitStore store = new InMemoryRateLimitStore();
+    private final RateLimitStore.Counter counter = new RateLimitStore.Counter("m ip:1 /ai/summarize", 0, MINUTE);
+
+    @Test
+    void testInstancesSeeEachOthersCountsAfterFlush() {
+        RateLimitNearCache first = new RateLimitNearCache(store, 100);
+        RateLimitNearCache second = new RateLimitNearCache(store, 100);
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(first.tryAcquire(counter, 10));
+        }
+        first.flush(0);
+
+        assertTrue(second.tryAcquire(counter, 10));
+        second.flush(0);
+        // 6 + 1 used cluster-wide, so 3 are left
+        for (int i = 0; i < 3; i++) {
+            assertTrue(second.tryAcquire(counter, 10));
+        }
+        assertFalse(second.tryAcquire(counter, 10));
+
+        second.flush(0);
+        // first has not refreshed since, so it is one flush behind...
+        assertTrue(first.tryAcquire(counter, 10));
+        first.flush(0);
+        // ...and catches up on the next one
+        assertFalse(first.tryAcquire(counter, 10));
+    }
+
+    @Test
+    void testReleasedCountIsNotSent() {
+        RateLimitNearCache cache = new RateLimitNearCache(store, 100);
+        cache.tryAcquire(counter, 10);
+        cache.tryAcquire(counter, 10);
+        cache.release(counter);
+        cache.flush(0);
+
+        assertEquals(1L, store.addAll(Map.of(counter, 0L)).get(counter));
+    }
+
+    @Test
+    void testFailedFlushKeepsLocalCounts() {
+        RateLimitStore failing = new InMemoryRateLimitStore() {
+            @Override
+            public Map<Counter, Long> addAll(Map<Counter, Long> increments) {
+                throw new IllegalStateException("database down");
+            }
+        };
+        RateLimitNearCache cache = new RateLimitNearCache(failing, 100);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.tryAcquire(counter, 10));
+        }
+
+        assertThrows(IllegalStateException.class, () -> cache.flush(0));
+        assertFalse(cache.tryAcquire(counter, 10));
+    }
+
+    @Test
+    void testEndedWindowsAreDropped() {
+        RateLimitNearCache cache = new RateLimitNearCache(store, 100);
+        cache.tryAcquire(counter, 10);
+
+        cache.flush(MINUTE);
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,104 @@
+package com.asked.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contention benchmark for {@link RateLimitService#isAllowed}.
+ *
+ * 16 and 32 threads call the limiter for a fixed time, either all on one
+ * hot key (worst-case CAS contention) or on one key per thread. Reports
+ * decisions per second and checks the number of admitted requests against
+ * what GCRA allows: the burst plus one request per emission interval.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=RateLimitServiceBenchmark
+ */
+@Tag("benchmark")
+class RateLimitServiceBenchmark {
+
+    private static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    // Default (non-AI) limit: 60 per minute with a burst of 60
+    private static final int BURST = 60;
+    private static final long EMISSION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void contention() throws Exception {
+        System.out.println();
+        System.out.printf("%8s %10s %16s %10s %10s%n", "threads", "keys", "decisions/s", "admitted", "allowed");
+        for (int threads : new int[]{16, 32}) {
+            run(threads, true);
+            run(threads, false);
+        }
+    }
+
+    private void run(int threads, boolean sharedKey) throws Exception {
+        RateLimitService service = new RateLimitService();
+        ReflectionTestUtils.setField(service, "maxEntries", 100_000);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        // Only the minute window is measured here
+        ReflectionTestUtils.setField(service, "environment", new MockEnvironment()
+                .withProperty("rate.limit.anonymous.default.per-hour", String.valueOf(0xFFFF)));
+        ReflectionTestUtils.setField(service, "store", new InMemoryRateLimitStore());
+        service.init();
+        LongAdder decisions = new LongAdder();
+        LongAdder admitted = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            String clientId = sharedKey ? "hot-client" : "client-" + t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long localDecisions = 0;
+                long localAdmitted = 0;
+                while (!stop.get()) {
+                    if (service.isAllowed(clientId, "/db/flashcards")) {
+                        localAdmitted++;
+                    }
+                    localDecisions++;
+                }
+                decisions.add(localDecisions);
+                admitted.add(localAdmitted);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        TimeUnit.NANOSECONDS.sleep(DURATION_NANOS);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        int keys = sharedKey ? 1 : threads;
+        long allowedPerKey = BURST + elapsed / EMISSION_INTERVAL_NANOS + 1;
+        long allowed = allowedPerKey * keys;
+        System.out.printf("%8d %10d %,16.0f %10d %10d%n", threads, keys,
+                decisions.sum() / (elapsed / 1e9), admitted.sum(), allowed);
+
+        assertTrue(admitted.sum() <= allowed, "admitted more than the limit allows");
+        assertTrue(admitted.sum() >= (long) BURST * keys, "burst was not fully admitted");
+    }
+}
@@ -0,0 +1,303 @@
+package com.asked.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitServiceTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockEnvironment environment = new MockEnvironment();
+
+    private RateLimitService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RateLimitService();
+        ReflectionTestUtils.setField(service, "maxEntries", 1000);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "environment", environment);
+        ReflectionTestUtils.setField(service, "store", new InMemoryRateLimitStore());
+        service.init();
+    }
+
+    @Test
+    void testBurstThenSustainedRate() {
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 60; i++) {
+            assertTrue(service.isAllowed("client", "/db/flashcards", now));
+        }
+        assertFalse(service.isAllowed("client", "/db/flashcards", now));
+
+        // 60 per minute: one more slot opens every second
+        assertTrue(service.isAllowed("client", "/db/flashcards", now + SECOND));
+        assertFalse(service.isAllowed("client", "/db/flashcards", now + SECOND));
+    }
+
+    @Test
+    void testRejectionReportsWaitUntilNextSlot() {
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, service.tryAcquire("client", "/ai/summarize", RateLimitService.Tier.ANONYMOUS, now));
+        }
+        // 10 per minute: the next slot opens in 6 seconds
+        assertEquals(6 * SECOND, service.tryAcquire("client", "/ai/summarize", RateLimitService.Tier.ANONYMOUS, now));
+        assertEquals(SECOND, service.tryAcquire("client", "/ai/summarize", RateLimitService.Tier.ANONYMOUS, now + 5 * SECOND));
+    }
+
+    @Test
+    void testAiEndpointsHaveLowerLimitAndKeysAreIndependent() {
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.isAllowed("client", "/ai/summarize", now));
+        }
+        assertFalse(service.isAllowed("client", "/ai/summarize", now));
+        assertTrue(service.isAllowed("other", "/ai/summarize", now));
+        assertTrue(service.isAllowed("client", "/ai/flashcards", now));
+    }
+
+    @Test
+    void testNoLostUpdatesUnderContention() throws Exception {
+        int threads = 16;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        long now = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    if (service.isAllowed("client", "/ai/flashcards", now)) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(10, admitted.get());
+    }
+
+    @Test
+    void testHourlyLimitIsEnforcedAcrossMinutes() {
+        long now = 1_000 * HOUR;
+        int admitted = 0;
+        // 10 AI requests a minute would be 600 an hour; the hourly cap is 100
+        for (int minute = 0; minute < 60; minute++) {
+            for (int i = 0; i < 10; i++) {
+                if (service.isAllowed("client", "/ai/summarize", now + minute * MINUTE)) {
+                    admitted++;
+                }
+            }
+        }
+        assertEquals(100, admitted);
+    }
+
+    @Test
+    void testHourlyWindowSlides() {
+        long now = 1_000 * HOUR + HOUR / 2;
+        for (int minute = 0; minute < 10; minute++) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(service.isAllowed("client", "/ai/summarize", now + minute * MINUTE));
+            }
+        }
+        assertFalse(service.isAllowed("client", "/ai/summarize", now + 10 * MINUTE));
+
+        // Halfway into the next hour, half of the previous hour still counts,
+        // and its weight falls from 50 to 35 over the next ten minutes
+        long later = 1_001 * HOUR + HOUR / 2;
+        int admitted = 0;
+        for (int minute = 0; minute < 10; minute++) {
+            for (int i = 0; i < 10; i++) {
+                if (service.isAllowed("client", "/ai/summarize", later + minute * MINUTE)) {
+                    admitted++;
+                }
+            }
+        }
+        assertEquals(65, admitted);
+    }
+
+    @Test
+    void testHourlyRejectionDoesNotUseMinuteAllowance() {
+        environment.setProperty("rate.limit.anonymous.default.per-hour", "5");
+        service.init();
+        long now = 1_000 * HOUR;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.isAllowed("client", "/db/flashcards", now));
+        }
+        assertFalse(service.isAllowed("client", "/db/flashcards", now));
+
+        environment.setProperty("rate.limit.anonymous.default.per-hour", "1000");
+        service.init();
+        // 55 of the 60-request minute burst are still available
+        for (int i = 0; i < 55; i++) {
+            assertTrue(service.isAllowed("client", "/db/flashcards", now));
+        }
+        assertFalse(service.isAllowed("client", "/db/flashcards", now));
+    }
+
+    @Test
+    void testUserTierAndConfiguredLimits() {
+        environment.setProperty("rate.limit.user.ai.per-minute", "3");
+        service.init();
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.isAllowed("user:1", "/ai/summarize", RateLimitService.Tier.USER, now));
+        }
+        assertFalse(service.isAllowed("user:1", "/ai/summarize", RateLimitService.Tier.USER, now));
+
+        // Signed-in users default to twice the anonymous allowance
+        for (int i = 0; i < 120; i++) {
+            assertTrue(service.isAllowed("user:1", "/db/flashcards", RateLimitService.Tier.USER, now));
+        }
+        assertFalse(service.isAllowed("user:1", "/db/flashcards", RateLimitService.Tier.USER, now));
+    }
+
+    @Test
+    void testInvalidLimitIsRejected() {
+        environment.setProperty("rate.limit.anonymous.ai.per-hour", "100000");
+        assertThrows(IllegalStateException.class, () -> service.init());
+    }
+
+    @Test
+    void testCleanupDropsOnlyIdleEntries() {
+        long now = System.nanoTime();
+        service.isAllowed("idle", "/db/flashcards", now - 3 * HOUR);
+        service.isAllowed("recent", "/db/flashcards", now - 2 * MINUTE);  // still counted in the hour window
+        service.isAllowed("busy", "/db/flashcards", now + MINUTE);
+        assertEquals(3.0, entries());
+
+        service.cleanup(now);
+
+        assertEquals(2.0, entries());
+        assertEquals(1.0, meterRegistry.counter("rate_limit.evictions", "cause", "idle").count());
+    }
+
+    @Test
+    void testPathIdsShareOneEntry() {
+        long now = System.nanoTime();
+        for (int id = 1; id <= 100; id++) {
+            service.isAllowed("client", "/db/flashcards/" + id, now);
+        }
+
+        assertEquals(1.0, entries());
+        // The shared template entry is limited like any other route
+        assertFalse(service.isAllowed("client", "/db/flashcards/101", now));
+    }
+
+    @Test
+    void testNormalizeRoute() {
+        assertEquals("/db/flashcards", RateLimitService.normalizeRoute("/db/flashcards"));
+        assertEquals("/db/flashcards/{id}", RateLimitService.normalizeRoute("/db/flashcards/42"));
+        assertEquals("/jobs/{id}/events",
+                RateLimitService.normalizeRoute("/jobs/3f2b8c1e-9a4d-4e6f-8b7a-1c2d3e4f5a6b/events"));
+        assertEquals("/ai/flashcards", RateLimitService.normalizeRoute("/ai/flashcards"));
+        assertEquals("/auth/add", RateLimitService.normalizeRoute("/auth/add"));
+        assertEquals("/", RateLimitService.normalizeRoute("/"));
+    }
+
+    @Test
+    void testFloodOfNewKeysDoesNotThrottleFreshClient() {
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        long now = 1_000 * SECOND;
+        // Rotating addresses: each key is new, and each uses up its whole minute
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < 10; j++) {
+                service.isAllowed("ip:flood-" + i, "/ai/summarize", now + i);
+            }
+        }
+        assertTrue(entries() <= 100);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.isAllowed("ip:fresh", "/ai/summarize", now + 1000));
+        }
+        assertFalse(service.isAllowed("ip:fresh", "/ai/summarize", now + 1000));
+        assertTrue(meterRegistry.counter("rate_limit.evictions", "cause", "capacity").count() >= 900);
+    }
+
+    @Test
+    void testEvictionKeepsRecentlyActiveClients() {
+        ReflectionTestUtils.setField(service, "maxEntries", 10);
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 60; i++) {
+            service.isAllowed("ip:regular", "/db/flashcards", now);
+        }
+        for (int i = 0; i < 100; i++) {
+            service.isAllowed("ip:flood-" + i, "/db/flashcards", now + i + 1);
+            // The regular client stays active and so keeps its exhausted window
+            assertFalse(service.isAllowed("ip:regular", "/db/flashcards", now + i + 1));
+        }
+    }
+
+    @Test
+    void testSharedStoreEnforcesOneLimitAcrossInstances() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        // Only the hour limit is small, so the test cannot straddle a minute boundary
+        environment.setProperty("rate.limit.anonymous.default.per-minute", "1000");
+        environment.setProperty("rate.limit.anonymous.default.per-hour", "10");
+        RateLimitService first = sharedInstance(jdbcTemplate);
+        RateLimitService second = sharedInstance(jdbcTemplate);
+
+        for (int i = 0; i < 7; i++) {
+            assertTrue(first.isAllowed("client", "/db/flashcards"));
+        }
+        first.flush();
+        // An instance learns a key's cluster total on its first flush after seeing it
+        assertTrue(second.isAllowed("client", "/db/flashcards"));
+        second.flush();
+
+        int admitted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (second.isAllowed("client", "/db/flashcards")) {
+                admitted++;
+            }
+        }
+        assertEquals(2, admitted);
+    }
+
+    private RateLimitService sharedInstance(JdbcTemplate jdbcTemplate) {
+        JdbcRateLimitStore store = new JdbcRateLimitStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        store.init();
+        RateLimitService instance = new RateLimitService();
+        ReflectionTestUtils.setField(instance, "maxEntries", 1000);
+        ReflectionTestUtils.setField(instance, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(instance, "environment", environment);
+        ReflectionTestUtils.setField(instance, "store", store);
+        instance.init();
+        return instance;
+    }
+
+    private double entries() {
+        return meterRegistry.get("rate_limit.entries").gauge().value();
+    }
+}
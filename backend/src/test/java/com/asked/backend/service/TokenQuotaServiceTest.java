@@ -0,0 +1,122 @@
+package com.asked.backend.service;
+
+import com.asked.backend.exception.QuotaExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenQuotaServiceTest {
+
+    private static final long WINDOW = 1_000_000L;
+    private static final RateLimitService.Tier ANONYMOUS = RateLimitService.Tier.ANONYMOUS;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TokenQuotaService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TokenQuotaService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "windowMs", WINDOW);
+        ReflectionTestUtils.setField(service, "anonymousTokens", 1000L);
+        ReflectionTestUtils.setField(service, "userTokens", 5000L);
+        ReflectionTestUtils.setField(service, "completionTokens", 100);
+        ReflectionTestUtils.setField(service, "degradeThreshold", 0.8);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        service.init();
+    }
+
+    @Test
+    void testEstimateCoversPromptAndAnswer() {
+        assertEquals(100 + 25, service.estimate("x".repeat(100)));
+    }
+
+    @Test
+    void testActualUsageReplacesEstimate() {
+        long now = 10 * WINDOW;
+        service.reserve("ip:1", ANONYMOUS, 600, now).settle(200);
+
+        // 800 left after settling, so a second 600 fits
+        service.reserve("ip:1", ANONYMOUS, 600, now);
+        assertThrows(QuotaExceededException.class, () -> service.reserve("ip:1", ANONYMOUS, 300, now));
+    }
+
+    @Test
+    void testRejectionReportsRemainingBudget() {
+        long now = 10 * WINDOW;
+        service.reserve("ip:1", ANONYMOUS, 700, now).settle(-1);
+
+        QuotaExceededException e = assertThrows(QuotaExceededException.class,
+                () -> service.reserve("ip:1", ANONYMOUS, 500, now));
+        assertEquals(300, e.getRemainingTokens());
+        assertEquals(1000, e.getLimitTokens());
+        assertTrue(e.getRetryAfterSeconds() >= 1);
+        assertEquals(1.0, meterRegistry.counter("ai.quota.rejected", "tier", "ANONYMOUS").count());
+    }
+
+    @Test
+    void testReleaseGivesReservationBack() {
+        long now = 10 * WINDOW;
+        service.reserve("ip:1", ANONYMOUS, 900, now).release();
+
+        assertDoesNotThrow(() -> service.reserve("ip:1", ANONYMOUS, 900, now));
+    }
+
+    @Test
+    void testNearLimitFlag() {
+        long now = 10 * WINDOW;
+        assertFalse(service.reserve("ip:1", ANONYMOUS, 500, now).isNearLimit());
+        assertTrue(service.reserve("ip:1", ANONYMOUS, 300, now).isNearLimit());
+    }
+
+    @Test
+    void testUsersHaveTheirOwnLargerBudget() {
+        long now = 10 * WINDOW;
+        assertThrows(QuotaExceededException.class, () -> service.reserve("ip:1", ANONYMOUS, 2000, now));
+        assertDoesNotThrow(() -> service.reserve("user:1", RateLimitService.Tier.USER, 2000, now));
+    }
+
+    @Test
+    void testUsageAgesOutOfRollingWindow() {
+        long start = 10 * WINDOW;
+        service.reserve("ip:1", ANONYMOUS, 1000, start);
+        assertThrows(QuotaExceededException.class, () -> service.reserve("ip:1", ANONYMOUS, 1, start + WINDOW / 2));
+
+        // Three quarters into the next window, a quarter of the old usage still counts
+        long later = start + WINDOW + 3 * WINDOW / 4;
+        assertDoesNotThrow(() -> service.reserve("ip:1", ANONYMOUS, 750, later));
+        assertThrows(QuotaExceededException.class, () -> service.reserve("ip:1", ANONYMOUS, 1, later));
+    }
+
+    @Test
+    void testEnsureAvailableDoesNotReserve() {
+        long now = 10 * WINDOW;
+        service.ensureAvailable("ip:1", ANONYMOUS, 1000, now);
+        service.ensureAvailable("ip:1", ANONYMOUS, 1000, now);
+        assertThrows(QuotaExceededException.class, () -> service.ensureAvailable("ip:1", ANONYMOUS, 1001, now));
+    }
+
+    @Test
+    void testUnkeyedCallsAreNotMetered() {
+        long now = 10 * WINDOW;
+        assertDoesNotThrow(() -> service.reserve(null, ANONYMOUS, 1_000_000, now).settle(1_000_000));
+    }
+
+    @Test
+    void testFloodOfNewKeysDoesNotExhaustFreshClientsBudget() {
+        long now = 10 * WINDOW;
+        // maxEntries is 100; each flooding address spends most of its own budget
+        for (int i = 0; i < 1000; i++) {
+            service.reserve("ip:flood-" + i, ANONYMOUS, 900, now + i).settle(900);
+        }
+        assertTrue(meterRegistry.get("ai.quota.entries").gauge().value() <= 100);
+
+        assertDoesNotThrow(() -> service.reserve("ip:fresh", ANONYMOUS, 1000, now + 1000));
+        assertTrue(meterRegistry.counter("ai.quota.evictions", "cause", "capacity").count() >= 900);
+    }
+}
@@ -0,0 +1,116 @@
+package com.asked.backend.service;
+
+import com.asked.backend.model.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserExistenceFilterTest {
+
+    private final List<UserRepository.Identity> users = new ArrayList<>();
+    private UserRepository userRepository;
+    private UserExistenceFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        // Serves the stored users in id order, 1000 at a time, like the real keyset query
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findTop1000ByIdGreaterThanOrderByIdAsc(anyLong())).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            return users.stream().filter(user -> user.getId() > after).limit(1000).toList();
+        });
+
+        filter = new UserExistenceFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "expectedUsers", 10_000L);
+        ReflectionTestUtils.setField(filter, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(filter, "userRepository", userRepository);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.init();
+    }
+
+    private void store(String username, String email) {
+        long id = users.size() + 1;
+        users.add(new UserRepository.Identity() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getUsername() {
+                return username;
+            }
+
+            public String getEmail() {
+                return email;
+            }
+        });
+    }
+
+    @Test
+    void testAnswersMaybeUntilBuilt() {
+        assertTrue(filter.mightExist("anyone", "anyone@example.com"));
+    }
+
+    @Test
+    void testLoadsExistingUsersAndRulesOutNewOnes() {
+        store("alice", "alice@example.com");
+        filter.rebuild();
+
+        assertTrue(filter.mightExist("alice", "fresh@example.com"));
+        assertTrue(filter.mightExist("Alice", "fresh@example.com"));
+        assertTrue(filter.mightExist("fresh", "alice@example.com"));
+        assertFalse(filter.mightExist("bob", "bob@example.com"));
+    }
+
+    @Test
+    void testLoadsTableInBatches() {
+        for (int i = 0; i < 2500; i++) {
+            store("user" + i, "user" + i + "@example.com");
+        }
+        filter.rebuild();
+
+        verify(userRepository, times(3)).findTop1000ByIdGreaterThanOrderByIdAsc(anyLong());
+        assertTrue(filter.mightExist("user0", "x@example.com"));
+        assertTrue(filter.mightExist("user2499", "x@example.com"));
+    }
+
+    @Test
+    void testAddedUsersAreSeen() {
+        filter.rebuild();
+        filter.add("carol", "carol@example.com");
+
+        assertTrue(filter.mightExist("carol", "other@example.com"));
+        assertTrue(filter.mightExist("other", "carol@example.com"));
+    }
+
+    @Test
+    void testNoFalseNegativesAndFewFalsePositives() {
+        filter.rebuild();
+        for (int i = 0; i < 5_000; i++) {
+            filter.add("user" + i, "user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(filter.mightExist("user" + i, "user" + i + "@example.com"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightExist("new" + i, "new" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        // Two keys per check at a 1% target each; allow generous slack
+        assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+    }
+}
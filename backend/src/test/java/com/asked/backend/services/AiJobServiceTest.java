@@ -0,0 +1,121 @@
+package com.asked.backend.services;
+
+import com.asked.backend.exception.JobQueueFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AiJobServiceTest {
+
+    private final PdfExtractionService pdfExtractionService = mock(PdfExtractionService.class);
+
+    private final ChunkedGenerationService chunkedGenerationService = mock(ChunkedGenerationService.class);
+
+    private AiJobService service;
+
+    private AiJobService createService(int workers, int queueCapacity) {
+        service = new AiJobService();
+        ReflectionTestUtils.setField(service, "workers", workers);
+        ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "retentionMs", 3600000L);
+        ReflectionTestUtils.setField(service, "retryAfterSeconds", 7L);
+        ReflectionTestUtils.setField(service, "pdfExtractionService", pdfExtractionService);
+        ReflectionTestUtils.setField(service, "chunkedGenerationService", chunkedGenerationService);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testFlashcardJobReportsProgressAndResult() throws Exception {
+        createService(2, 4);
+        File file = new File("lecture.pdf");
+        when(pdfExtractionService.extract(file)).thenReturn(new ExtractedDocument(List.of("page one", "page two")));
+        when(chunkedGenerationService.mergeFlashcards(anyList(), isNull())).thenReturn("[partial]");
+        when(chunkedGenerationService.generateFlashcards(anyList(), any(), any(), any(),
+                any(ChunkedGenerationService.ChunkListener.class))).thenAnswer(invocation -> {
+            ChunkedGenerationService.ChunkListener listener = invocation.getArgument(4);
+            listener.onChunk(1, 2, "[{\"question\":\"Q1\",\"answer\":\"A1\"}]");
+            listener.onChunk(2, 2, "[{\"question\":\"Q2\",\"answer\":\"A2\"}]");
+            return "[deck]";
+        });
+
+        AiJob job = service.submit(file, AiJob.Type.FLASHCARDS, 10, null, null, GenerationOptions.defaults(), "ip:1");
+
+        awaitTerminal(job);
+        assertEquals(AiJob.Status.COMPLETED, job.getStatus());
+        assertEquals("[deck]", job.getResult());
+        assertEquals("[partial]", job.getPartialResult());
+        assertEquals(2, job.getChunksCompleted());
+        assertEquals(2, job.getChunksTotal());
+        assertEquals(2, job.getPageCount());
+        assertSame(job, service.get(job.getId()));
+    }
+
+    @Test
+    void testFailedExtractionMarksJobFailed() throws Exception {
+        createService(1, 4);
+        File file = new File("broken.pdf");
+        when(pdfExtractionService.extract(file)).thenThrow(new IOException("Not a PDF"));
+
+        AiJob job = service.submit(file, AiJob.Type.SUMMARY, null, null, null, GenerationOptions.defaults(), "ip:1");
+
+        awaitTerminal(job);
+        assertEquals(AiJob.Status.FAILED, job.getStatus());
+        assertEquals("Not a PDF", job.getError());
+    }
+
+    @Test
+    void testFullQueueRejectsWithRetryAfter() throws Exception {
+        createService(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(pdfExtractionService.extract(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new ExtractedDocument(List.of("text"));
+        });
+
+        List<AiJob> accepted = new ArrayList<>();
+        accepted.add(service.submit(new File("a.pdf"), AiJob.Type.EXTRACT, null, null, null, GenerationOptions.defaults(), "ip:1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        accepted.add(service.submit(new File("b.pdf"), AiJob.Type.EXTRACT, null, null, null, GenerationOptions.defaults(), "ip:1"));
+
+        JobQueueFullException rejected = assertThrows(JobQueueFullException.class, () ->
+                service.submit(new File("c.pdf"), AiJob.Type.EXTRACT, null, null, null, GenerationOptions.defaults(), "ip:1"));
+        assertEquals(7L, rejected.getRetryAfterSeconds());
+
+        release.countDown();
+        for (AiJob job : accepted) {
+            awaitTerminal(job);
+            assertEquals(AiJob.Status.COMPLETED, job.getStatus());
+        }
+    }
+
+    private void awaitTerminal(AiJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.getStatus().isTerminal() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
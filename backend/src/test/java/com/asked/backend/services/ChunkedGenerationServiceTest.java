@@ -0,0 +1,152 @@
+package com.asked.backend.services;
+
+import com.asked.backend.service.TokenQuotaService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChunkedGenerationServiceTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testMergeFlashcardsDedupesAndTrims() throws Exception {
+        ChunkedGenerationService service = new ChunkedGenerationService();
+        ReflectionTestUtils.setField(service, "mapper", mapper);
+
+        List<String> responses = List.of(
+                "Here are your flashcards:\n```json\n[{\"question\": \"What is Java?\", \"answer\": \"A language\"}," +
+                        "{\"question\": \"Who made Java?\", \"answer\": \"Sun\"}]\n```",
+                "[{\"question\": \"what is java\", \"answer\": \"Duplicate\"}," +
+                        "{\"question\": \"When was Java released?\", \"answer\": \"1995\"}," +
+                        "{\"question\": \"\", \"answer\": \"Missing question\"}]");
+
+        JsonNode merged = mapper.readTree(service.mergeFlashcards(responses, null));
+        assertEquals(3, merged.size());
+        assertEquals("A language", merged.get(0).get("answer").asText());
+        assertEquals("1995", merged.get(2).get("answer").asText());
+
+        JsonNode trimmed = mapper.readTree(service.mergeFlashcards(responses, 2));
+        assertEquals(2, trimmed.size());
+    }
+
+    @Test
+    void testMergeFlashcardsKeepsCardsContainingBraces() throws Exception {
+        ChunkedGenerationService service = new ChunkedGenerationService();
+        ReflectionTestUtils.setField(service, "mapper", mapper);
+
+        List<String> responses = List.of(
+                "```json\n[{\"question\": \"What does {} denote in a set?\", \"answer\": \"The empty set\"}," +
+                        "{\"question\": \"Write a Java block\", \"answer\": \"if (x) { y(); }\"}]\n```",
+                // Truncated array: the lenient scan still recovers the complete flat objects
+                "[{\"question\": \"Who made Java?\", \"answer\": \"Sun\"}, {\"question\": \"Cut o");
+
+        JsonNode merged = mapper.readTree(service.mergeFlashcards(responses, null));
+        assertEquals(3, merged.size());
+        assertEquals("The empty set", merged.get(0).get("answer").asText());
+        assertEquals("if (x) { y(); }", merged.get(1).get("answer").asText());
+        assertEquals("Sun", merged.get(2).get("answer").asText());
+    }
+
+    @Test
+    void testCheckRequestRejectsNonPositiveSettings() {
+        ChunkedGenerationService service = new ChunkedGenerationService();
+
+        assertNull(service.checkRequest(null, null));
+        assertNull(service.checkRequest(20, 2));
+        assertNotNull(service.checkRequest(0, null));
+        assertNotNull(service.checkRequest(-5, null));
+        assertNotNull(service.checkRequest(20, 0));
+    }
+
+    @Test
+    void testTargetCardsCappedAtConfiguredMaximum() throws Exception {
+        OpenRouterService openRouterService = mock(OpenRouterService.class);
+        when(openRouterService.getFlashcardsFromText(anyString(), any(GenerationOptions.class)))
+                .thenReturn("[{\"question\": \"What is Java?\", \"answer\": \"A language\"}]");
+        ChunkedGenerationService service = new ChunkedGenerationService();
+        ReflectionTestUtils.setField(service, "openRouterService", openRouterService);
+        ReflectionTestUtils.setField(service, "mapper", mapper);
+        ReflectionTestUtils.setField(service, "quotaService", mock(TokenQuotaService.class));
+        ReflectionTestUtils.setField(service, "maxChunkTokens", 6000);
+        ReflectionTestUtils.setField(service, "defaultParallelism", 2);
+        ReflectionTestUtils.setField(service, "maxParallelism", 2);
+        ReflectionTestUtils.setField(service, "poolSize", 2);
+        ReflectionTestUtils.setField(service, "maxTargetCards", 50);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+        try {
+            service.generateFlashcards(List.of("Java is a language."), 1_000_000, null, GenerationOptions.defaults());
+
+            ArgumentCaptor<GenerationOptions> options = ArgumentCaptor.forClass(GenerationOptions.class);
+            verify(openRouterService).getFlashcardsFromText(anyString(), options.capture());
+            assertEquals(50, options.getValue().getCardCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testFewFailedChunksAreSkippedAndCounted() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OpenRouterService openRouterService = mock(OpenRouterService.class);
+        when(openRouterService.getFlashcardsFromText(anyString(), any(GenerationOptions.class))).thenAnswer(invocation -> {
+            String chunk = invocation.getArgument(0);
+            if (chunk.startsWith("Broken")) {
+                throw new IOException("upstream error");
+            }
+            return "[{\"question\": \"About " + chunk + "?\", \"answer\": \"Yes\"}]";
+        });
+        ChunkedGenerationService service = newChunkedService(openRouterService, meterRegistry);
+        try {
+            List<String> oneBroken = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                oneBroken.add((i == 3 ? "Broken page " : "Good page ") + i);
+            }
+            JsonNode cards = mapper.readTree(service.generateFlashcards(oneBroken, 10, null, GenerationOptions.defaults()));
+            assertEquals(9, cards.size());
+            assertEquals(1.0, meterRegistry.counter("ai.chunks.failed").count());
+
+            List<String> twoBroken = new ArrayList<>(oneBroken);
+            twoBroken.set(7, "Broken page 7");
+            IOException error = assertThrows(IOException.class,
+                    () -> service.generateFlashcards(twoBroken, 10, null, GenerationOptions.defaults()));
+            assertTrue(error.getMessage().startsWith("2 of 10 chunks failed"), error.getMessage());
+            assertEquals(3.0, meterRegistry.counter("ai.chunks.failed").count());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private ChunkedGenerationService newChunkedService(OpenRouterService openRouterService,
+                                                       SimpleMeterRegistry meterRegistry) {
+        ChunkedGenerationService service = new ChunkedGenerationService();
+        ReflectionTestUtils.setField(service, "openRouterService", openRouterService);
+        ReflectionTestUtils.setField(service, "mapper", mapper);
+        ReflectionTestUtils.setField(service, "quotaService", mock(TokenQuotaService.class));
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        // One page per chunk
+        ReflectionTestUtils.setField(service, "maxChunkTokens", 4);
+        ReflectionTestUtils.setField(service, "defaultParallelism", 2);
+        ReflectionTestUtils.setField(service, "maxParallelism", 2);
+        ReflectionTestUtils.setField(service, "poolSize", 2);
+        ReflectionTestUtils.setField(service, "maxTargetCards", 50);
+        ReflectionTestUtils.setField(service, "maxFailedFraction", 0.1);
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,88 @@
+package com.asked.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractedTextCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ExtractedTextCache newCache(boolean enabled) {
+        ExtractedTextCache cache = new ExtractedTextCache();
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "cacheDir", tempDir.resolve("text-cache").toString());
+        ReflectionTestUtils.setField(cache, "mapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.init();
+        return cache;
+    }
+
+    private File upload(String name, String content) throws Exception {
+        return Files.writeString(tempDir.resolve(name), content).toFile();
+    }
+
+    @Test
+    void testDisabledCacheWritesNothing() throws Exception {
+        ExtractedTextCache cache = newCache(false);
+
+        String sha256 = cache.fingerprint(upload("a.pdf", "first"));
+
+        assertEquals(64, sha256.length());
+        assertFalse(Files.exists(tempDir.resolve("text-cache")));
+    }
+
+    @Test
+    void testDeletedUploadsAreDroppedFromTheIndex() throws Exception {
+        ExtractedTextCache cache = newCache(true);
+        File kept = upload("kept.pdf", "kept");
+        File deleted = upload("deleted.pdf", "deleted");
+        String keptSha = cache.fingerprint(kept);
+        String deletedSha = cache.fingerprint(deleted);
+        cache.put(keptSha, new ExtractedDocument(List.of("kept text")));
+        cache.put(deletedSha, new ExtractedDocument(List.of("deleted text")));
+
+        Files.delete(deleted.toPath());
+        // Loading the index prunes it
+        ExtractedTextCache reloaded = newCache(true);
+
+        String index = Files.readString(tempDir.resolve("text-cache").resolve("index.properties"));
+        assertTrue(index.contains("kept.pdf"));
+        assertFalse(index.contains("deleted.pdf"));
+        assertNull(reloaded.get(deletedSha, 0));
+        assertEquals(List.of("kept text"), reloaded.get(keptSha, 0).getPages());
+
+        Files.delete(kept.toPath());
+        reloaded.prune();
+        assertFalse(Files.readString(tempDir.resolve("text-cache").resolve("index.properties")).contains("kept.pdf"));
+        assertNull(reloaded.get(keptSha, 0));
+    }
+
+    @Test
+    void testMalformedIndexLinesAreSkipped() throws Exception {
+        ExtractedTextCache cache = newCache(true);
+        File kept = upload("kept.pdf", "kept");
+        String keptSha = cache.fingerprint(kept);
+
+        Path indexFile = tempDir.resolve("text-cache").resolve("index.properties");
+        Files.writeString(indexFile, Files.readString(indexFile)
+                + "/uploads/garbled.pdf=12x,34,abc\n"
+                + "/uploads/short.pdf=12\n");
+        ExtractedTextCache reloaded = newCache(true);
+
+        assertEquals(2.0, meterRegistry.counter("pdf.text_cache.index_skipped").count());
+        assertEquals(keptSha, reloaded.fingerprint(kept));
+    }
+}
@@ -0,0 +1,169 @@
+package com.asked.backend.services;
+
+import com.asked.backend.model.User;
+import com.asked.backend.model.UserRepository;
+import com.asked.backend.model.flashcardRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Import and export of a 1M-card library.
+ *
+ * The import body is generated on the fly and the export is written to a
+ * byte-counting sink, so neither side of the benchmark holds the library
+ * itself. Heap is reported after a full GC before ("live") and after each
+ * phase, with the peak sampled in between; the peak includes garbage not
+ * yet collected. Live heap grows on import only because the test
+ * profile's H2 database keeps its tables in the same heap.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=FlashcardTransferBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "logging.level.com.asked.backend=INFO",
+        "logging.level.org.springframework=WARN"})
+@ActiveProfiles("test")
+class FlashcardTransferBenchmark {
+
+    private static final int CARDS = 1_000_000;
+
+    @Autowired
+    private FlashcardTransferService transferService;
+
+    @Autowired
+    private flashcardRepository flashcardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void millionCardLibrary() throws Exception {
+        flashcardRepository.deleteAllInBatch();
+        userRepository.deleteAll();
+        Long userId = userRepository.save(new User("library", "library@example.com", "hash")).getId();
+
+        System.out.println();
+        System.out.printf("%-14s %10s %10s %12s %10s %10s %10s%n",
+                "phase", "cards", "seconds", "cards/s", "live MB", "peak MB", "after MB");
+
+        long imported = measure("import ndjson", () ->
+                transferService.importCards(userId, FlashcardTransferService.Format.NDJSON, new GeneratedBody(CARDS)));
+        assertEquals(CARDS, imported);
+
+        CountingSink ndjson = new CountingSink();
+        assertEquals(CARDS, measure("export ndjson", () ->
+                transferService.export(userId, FlashcardTransferService.Format.NDJSON, ndjson)));
+        CountingSink csv = new CountingSink();
+        assertEquals(CARDS, measure("export csv", () ->
+                transferService.export(userId, FlashcardTransferService.Format.CSV, csv)));
+        System.out.printf("output: ndjson %,d MB, csv %,d MB%n", ndjson.bytes >> 20, csv.bytes >> 20);
+
+        flashcardRepository.deleteAllInBatch();
+        userRepository.deleteAll();
+    }
+
+    private long measure(String name, Phase phase) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peak = new AtomicLong(before);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread sampler = new Thread(() -> {
+            while (!stop.get()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        long cards = phase.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        stop.set(true);
+        sampler.join();
+        System.gc();
+
+        System.out.printf("%-14s %,10d %10.1f %,12.0f %,10d %,10d %,10d%n", name, cards, seconds, cards / seconds,
+                before >> 20, peak.get() >> 20, memory.getHeapMemoryUsage().getUsed() >> 20);
+        return cards;
+    }
+
+    @FunctionalInterface
+    private interface Phase {
+        long run() throws Exception;
+    }
+
+    /** NDJSON body produced line by line as it is read. */
+    private static final class GeneratedBody extends InputStream {
+        private final int cards;
+        private int next;
+        private byte[] line = new byte[0];
+        private int position;
+
+        GeneratedBody(int cards) {
+            this.cards = cards;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length && !advance()) {
+                return -1;
+            }
+            return line[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == line.length && !advance()) {
+                return -1;
+            }
+            int count = Math.min(length, line.length - position);
+            System.arraycopy(line, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean advance() {
+            if (next == cards) {
+                return false;
+            }
+            line = ("{\"question\":\"Question " + next + " about a moderately long topic?\","
+                    + "\"answer\":\"Answer " + next + " with a sentence or two of explanation.\","
+                    + "\"folder\":\"folder-" + (next % 20) + "\"}\n").getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            next++;
+            return true;
+        }
+    }
+
+    private static final class CountingSink extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            bytes += length;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.asked.backend.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmResponseCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private LlmResponseCache newCache(int maxEntries, boolean diskEnabled) {
+        LlmResponseCache cache = new LlmResponseCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "diskEnabled", diskEnabled);
+        ReflectionTestUtils.setField(cache, "diskDir", tempDir.toString());
+        cache.init();
+        return cache;
+    }
+
+    @Test
+    void testKeyIgnoresWhitespaceDifferences() {
+        LlmResponseCache cache = newCache(10, false);
+
+        String a = cache.key("model", "Summarize", "Java is  a\nlanguage. ");
+        String b = cache.key("model", "Summarize", "  Java is a language.");
+
+        assertEquals(a, b);
+        assertNotEquals(a, cache.key("other-model", "Summarize", "Java is a language."));
+        assertNotEquals(a, cache.key("model", "Explain", "Java is a language."));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWhenFull() {
+        LlmResponseCache cache = newCache(2, false);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1.0, meterRegistry.counter("llm.cache.evictions", "cause", "size").count());
+    }
+
+    @Test
+    void testDiskTierSurvivesRestart() {
+        String key = newCache(10, true).key("model", "Summarize", "text");
+        newCache(10, true).put(key, "cached summary");
+
+        LlmResponseCache restarted = newCache(10, true);
+
+        assertEquals("cached summary", restarted.get(key));
+        assertEquals(1.0, meterRegistry.counter("llm.cache.requests", "result", "hit", "tier", "disk").count());
+    }
+}
@@ -1,9 +1,26 @@
 package com.asked.backend.services;
 
+import com.asked.backend.exception.QuotaExceededException;
+import com.asked.backend.service.RateLimitService;
+import com.asked.backend.service.TokenQuotaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -127,4 +144,165 @@ class OpenRouterServiceTest {
             System.out.println("AI service not available for testing: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testCoalescedCallersPayFromTheirOwnBudgets() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    upstreamCalls.incrementAndGet();
+                    entered.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    String body = "{\"choices\":[{\"message\":{\"content\":\"Shared summary\"}}],"
+                            + "\"usage\":{\"total_tokens\":300}}";
+                    return new Response.Builder()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(200)
+                            .message("OK")
+                            .body(ResponseBody.create(body, MediaType.get("application/json")))
+                            .build();
+                })
+                .build();
+
+        TokenQuotaService quotaService = newQuotaService(meterRegistry);
+        OpenRouterService service = newService(httpClient, httpClient, quotaService, meterRegistry);
+
+        RateLimitService.Tier tier = RateLimitService.Tier.ANONYMOUS;
+        String text = "Same document for everyone.";
+        // The broke client has 100 tokens left, less than this call's estimate
+        quotaService.reserve("ip:broke", tier, 900).settle(900);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> summarize(service, text, "ip:first"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // Over quota: rejected on its own budget instead of riding the flight
+        assertThrows(QuotaExceededException.class, () -> service.summarizeText(text, "Summarize.",
+                GenerationOptions.defaults().setQuota("ip:broke", tier)));
+
+        CompletableFuture<String> joiner = CompletableFuture.supplyAsync(() -> summarize(service, text, "ip:joiner"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.counter("singleflight.saved", "name", "openrouter").count() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertEquals("Shared summary", first.get(5, TimeUnit.SECONDS));
+        assertEquals("Shared summary", joiner.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstreamCalls.get());
+
+        // Both callers were charged the 300 tokens the shared call used
+        for (String client : new String[]{"ip:first", "ip:joiner"}) {
+            quotaService.ensureAvailable(client, tier, 700);
+            assertThrows(QuotaExceededException.class, () -> quotaService.ensureAvailable(client, tier, 701));
+        }
+    }
+
+    @Test
+    void testStreamEndingWithoutDoneIsAnErrorAndNotCached() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        // The connection drops after one delta: no usage, no [DONE]
+        OkHttpClient streamingClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    upstreamCalls.incrementAndGet();
+                    String body = "data: {\"choices\":[{\"delta\":{\"content\":\"Half a sum\"}}]}\n\n";
+                    return new Response.Builder()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(200)
+                            .message("OK")
+                            .body(ResponseBody.create(body, MediaType.get("text/event-stream")))
+                            .build();
+                })
+                .build();
+        TokenQuotaService quotaService = newQuotaService(meterRegistry);
+        OpenRouterService service = newService(streamingClient, streamingClient, quotaService, meterRegistry);
+        GenerationOptions options = GenerationOptions.defaults()
+                .setQuota("ip:reader", RateLimitService.Tier.ANONYMOUS);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            CompletableFuture<Throwable> outcome = new CompletableFuture<>();
+            service.streamSummary("Some text.", "Summarize.", options, new CompletionStreamListener() {
+                @Override
+                public void onToken(String token) {
+                }
+
+                @Override
+                public void onComplete() {
+                    outcome.complete(null);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    outcome.complete(error);
+                }
+            });
+            assertNotNull(outcome.get(5, TimeUnit.SECONDS), "a truncated stream must fail");
+        }
+        // Nothing was cached, so the second attempt went upstream again
+        assertEquals(2, upstreamCalls.get());
+        // Each attempt was charged its estimate
+        long estimate = quotaService.estimate("Summarize.\n\nSome text.");
+        quotaService.ensureAvailable("ip:reader", RateLimitService.Tier.ANONYMOUS, 1000 - 2 * estimate);
+        assertThrows(QuotaExceededException.class, () -> quotaService.ensureAvailable("ip:reader",
+                RateLimitService.Tier.ANONYMOUS, 1000 - 2 * estimate + 1));
+    }
+
+    private static TokenQuotaService newQuotaService(SimpleMeterRegistry meterRegistry) {
+        TokenQuotaService quotaService = new TokenQuotaService();
+        ReflectionTestUtils.setField(quotaService, "enabled", true);
+        ReflectionTestUtils.setField(quotaService, "windowMs", 86_400_000L);
+        ReflectionTestUtils.setField(quotaService, "anonymousTokens", 1000L);
+        ReflectionTestUtils.setField(quotaService, "userTokens", 5000L);
+        ReflectionTestUtils.setField(quotaService, "completionTokens", 100);
+        ReflectionTestUtils.setField(quotaService, "degradeThreshold", 0.8);
+        ReflectionTestUtils.setField(quotaService, "maxEntries", 100);
+        ReflectionTestUtils.setField(quotaService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(quotaService, "init");
+        return quotaService;
+    }
+
+    private static OpenRouterService newService(OkHttpClient httpClient, OkHttpClient streamingClient,
+                                                TokenQuotaService quotaService, SimpleMeterRegistry meterRegistry) {
+        LlmResponseCache responseCache = new LlmResponseCache();
+        ReflectionTestUtils.setField(responseCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(responseCache, "enabled", true);
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 10);
+        ReflectionTestUtils.setField(responseCache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(responseCache, "diskEnabled", false);
+        ReflectionTestUtils.setField(responseCache, "diskDir", "");
+        responseCache.init();
+
+        OpenRouterService service = new OpenRouterService();
+        ReflectionTestUtils.setField(service, "apiKey", "test");
+        ReflectionTestUtils.setField(service, "model", "main-model");
+        ReflectionTestUtils.setField(service, "fallbackModel", "");
+        ReflectionTestUtils.setField(service, "referer", "https://asked.local");
+        ReflectionTestUtils.setField(service, "httpClient", httpClient);
+        ReflectionTestUtils.setField(service, "streamingClient", streamingClient);
+        ReflectionTestUtils.setField(service, "mapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "responseCache", responseCache);
+        ReflectionTestUtils.setField(service, "quotaService", quotaService);
+        service.init();
+        return service;
+    }
+
+    private static String summarize(OpenRouterService service, String text, String quotaKey) {
+        try {
+            return service.summarizeText(text, "Summarize.",
+                    GenerationOptions.defaults().setQuota(quotaKey, RateLimitService.Tier.ANONYMOUS));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
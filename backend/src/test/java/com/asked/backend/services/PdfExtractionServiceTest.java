@@ -0,0 +1,196 @@
+package com.asked.backend.services;
+
+import com.asked.backend.service.TokenQuotaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PdfExtractionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PdfExtractionService service;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+
+        ExtractedTextCache textCache = new ExtractedTextCache();
+        ReflectionTestUtils.setField(textCache, "enabled", true);
+        ReflectionTestUtils.setField(textCache, "cacheDir", tempDir.resolve("text-cache").toString());
+        ReflectionTestUtils.setField(textCache, "mapper", new ObjectMapper());
+        ReflectionTestUtils.setField(textCache, "meterRegistry", meterRegistry);
+        textCache.init();
+
+        service = new PdfExtractionService();
+        ReflectionTestUtils.setField(service, "textCache", textCache);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "poolSize", 3);
+        ReflectionTestUtils.setField(service, "queueCapacity", 8);
+        ReflectionTestUtils.setField(service, "pagesPerTask", 4);
+        ReflectionTestUtils.setField(service, "maxMainMemoryMb", 1L);
+        ReflectionTestUtils.setField(service, "scratchDir", tempDir.toString());
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testPagesAreExtractedInOrderAcrossParallelRanges() throws Exception {
+        File pdf = writePdf(10);
+
+        ExtractedDocument document = service.extract(pdf);
+
+        assertEquals(10, document.getPageCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Page number " + (i + 1), document.getPages().get(i).trim());
+        }
+        assertTrue(document.getText().contains("Page number 7"));
+    }
+
+    @Test
+    void testSmallDocumentIsExtractedInOnePass() throws Exception {
+        File pdf = writePdf(2);
+
+        ExtractedDocument document = service.extract(pdf);
+
+        assertEquals(2, document.getPageCount());
+        assertEquals("Page number 2", document.getPages().get(1).trim());
+    }
+
+    @Test
+    void testRepeatedExtractionIsServedFromTextCache() throws Exception {
+        File pdf = writePdf(3);
+
+        service.extract(pdf);
+        ExtractedDocument cached = service.extract(pdf);
+
+        assertEquals("Page number 3", cached.getPages().get(2).trim());
+        assertEquals(1.0, meterRegistry.counter("pdf.text_cache.requests", "result", "hit").count());
+        assertEquals(pdf.length(), meterRegistry.counter("pdf.text_cache.bytes_saved").count());
+    }
+
+    @Test
+    void testChangedFileIsExtractedAgain() throws Exception {
+        File pdf = writePdf(2);
+        service.extract(pdf);
+
+        File replaced = writePdf(4, pdf.getName());
+        replaced.setLastModified(pdf.lastModified() + 1000);
+        ExtractedDocument document = service.extract(replaced);
+
+        assertEquals(4, document.getPageCount());
+        assertEquals(0.0, meterRegistry.counter("pdf.text_cache.requests", "result", "hit").count());
+    }
+
+    @Test
+    void testBlankPageKeepsItsPlaceInTheRange() throws Exception {
+        File file = tempDir.resolve("with-blank.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= 6; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (i == 3) {
+                    continue;
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page number " + i);
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+
+        ExtractedDocument document = service.extract(file);
+
+        assertEquals(6, document.getPageCount());
+        assertEquals("", document.getPages().get(2).trim());
+        assertEquals("Page number 4", document.getPages().get(3).trim());
+        assertEquals("Page number 6", document.getPages().get(5).trim());
+    }
+
+    @Test
+    void testSummaryChunksFollowExtractedPages() throws Exception {
+        File pdf = writePdf(10);
+        OpenRouterService openRouterService = mock(OpenRouterService.class);
+        when(openRouterService.summarizeText(anyString(), anyString(), any(GenerationOptions.class)))
+                .thenReturn("S");
+        ChunkedGenerationService generation = new ChunkedGenerationService();
+        ReflectionTestUtils.setField(generation, "openRouterService", openRouterService);
+        ReflectionTestUtils.setField(generation, "quotaService", mock(TokenQuotaService.class));
+        ReflectionTestUtils.setField(generation, "meterRegistry", meterRegistry);
+        // Room for two pages per chunk
+        ReflectionTestUtils.setField(generation, "maxChunkTokens", 8);
+        ReflectionTestUtils.setField(generation, "defaultParallelism", 2);
+        ReflectionTestUtils.setField(generation, "maxParallelism", 2);
+        ReflectionTestUtils.setField(generation, "poolSize", 2);
+        generation.init();
+        try {
+            ExtractedDocument document = service.extract(pdf);
+            generation.summarize(document.getPages(), "Summarize.", null, GenerationOptions.defaults(), null);
+
+            ArgumentCaptor<String> chunks = ArgumentCaptor.forClass(String.class);
+            verify(openRouterService, times(5)).summarizeText(chunks.capture(),
+                    eq("Summarize this section of a longer document. Keep every key fact, definition and number."),
+                    any(GenerationOptions.class));
+            for (String chunk : chunks.getAllValues()) {
+                assertTrue(chunk.matches("Page number \\d+\n\nPage number \\d+"), chunk);
+            }
+        } finally {
+            generation.shutdown();
+        }
+    }
+
+    private File writePdf(int pageCount) throws Exception {
+        return writePdf(pageCount, "lecture-" + pageCount + ".pdf");
+    }
+
+    private File writePdf(int pageCount, String name) throws Exception {
+        File file = tempDir.resolve(name).toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= pageCount; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page number " + i);
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
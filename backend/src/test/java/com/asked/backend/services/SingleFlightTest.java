@@ -0,0 +1,71 @@
+package com.asked.backend.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", new SimpleMeterRegistry());
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> singleFlight.execute("same-pdf", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "flashcards";
+                })));
+            }
+
+            // Wait until every caller except the leader has joined the in-flight call
+            long deadline = System.currentTimeMillis() + 5000;
+            while (singleFlight.savedCount() < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("flashcards", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, executions.get());
+        assertEquals(callers - 1, singleFlight.savedCount());
+    }
+
+    @Test
+    void testFailureIsSharedAndNotRemembered() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", new SimpleMeterRegistry());
+
+        IOException error = assertThrows(IOException.class,
+                () -> singleFlight.execute("key", () -> { throw new IOException("OpenRouter Error"); }));
+        assertEquals("OpenRouter Error", error.getMessage());
+
+        // The next call runs again instead of replaying the failure
+        assertEquals("ok", singleFlight.execute("key", () -> "ok"));
+    }
+}
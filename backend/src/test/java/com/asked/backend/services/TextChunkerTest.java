@@ -0,0 +1,45 @@
+package com.asked.backend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    @Test
+    void testSmallPagesArePackedIntoOneChunk() {
+        List<String> chunks = TextChunker.chunkPages(List.of("Page one.", "Page two."), 100);
+
+        assertEquals(1, chunks.size());
+        assertEquals("Page one.\n\nPage two.", chunks.get(0));
+    }
+
+    @Test
+    void testChunksRespectTokenBudget() {
+        String page = "A sentence about photosynthesis. ".repeat(200);
+        List<String> chunks = TextChunker.chunk(page + TextChunker.PAGE_BREAK + page, 250);
+
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(TextChunker.estimateTokens(chunk) <= 250, "Chunk over budget: " + chunk.length());
+        }
+    }
+
+    @Test
+    void testLargePageSplitsOnParagraphs() {
+        String paragraphA = "a".repeat(300);
+        String paragraphB = "b".repeat(300);
+
+        List<String> chunks = TextChunker.chunkPages(List.of(paragraphA + "\n\n" + paragraphB), 100);
+
+        assertEquals(List.of(paragraphA, paragraphB), chunks);
+    }
+
+    @Test
+    void testBlankTextHasNoChunks() {
+        assertTrue(TextChunker.chunk("   ", 100).isEmpty());
+        assertTrue(TextChunker.chunk(null, 100).isEmpty());
+    }
+}
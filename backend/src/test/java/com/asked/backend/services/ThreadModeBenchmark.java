@@ -0,0 +1,183 @@
+package com.asked.backend.services;
+
+import com.asked.backend.utils.VirtualThreads;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Load benchmark for the blocking OpenRouter call path under the two request
+ * thread modes: a 200-thread platform pool (Tomcat's default max threads)
+ * and one virtual thread per request (spring.threads.virtual.enabled=true).
+ *
+ * A local HTTP server stands in for OpenRouter with a fixed response delay.
+ * For each concurrency level every request makes one blocking OkHttp call;
+ * the report shows p50/p99 latency, throughput, the latency of a cheap
+ * request submitted behind the load (a /db/flashcards read), and the highest
+ * level whose p99 stays within 2x the upstream delay.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=ThreadModeBenchmark
+ * (the virtual-thread half needs -Pjava21 on a Java 21 JVM).
+ */
+@Tag("benchmark")
+class ThreadModeBenchmark {
+
+    private static final int UPSTREAM_DELAY_MS = 200;
+    private static final int PLATFORM_POOL_SIZE = 200;
+    private static final int[] CONCURRENCY = {100, 200, 400, 800, 1600};
+
+    private static HttpServer upstream;
+    private static ExecutorService upstreamExecutor;
+    private static OkHttpClient client;
+    private static String url;
+
+    @BeforeAll
+    static void startUpstream() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        upstream.createContext("/chat/completions", exchange -> {
+            try {
+                Thread.sleep(UPSTREAM_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"choices\":[{\"message\":{\"content\":\"ok\"}}]}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        upstreamExecutor = Executors.newCachedThreadPool();
+        upstream.setExecutor(upstreamExecutor);
+        upstream.start();
+
+        url = "http://127.0.0.1:" + upstream.getAddress().getPort() + "/chat/completions";
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(2000, 5, TimeUnit.MINUTES))
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+        upstreamExecutor.shutdownNow();
+        client.connectionPool().evictAll();
+    }
+
+    @Test
+    void platformThreads() throws Exception {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService requests = Executors.newFixedThreadPool(PLATFORM_POOL_SIZE,
+                runnable -> new Thread(runnable, "bench-platform-" + threadCount.incrementAndGet()));
+        try {
+            run("platform (" + PLATFORM_POOL_SIZE + " threads)", requests);
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need Java 21");
+        ExecutorService requests = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), VirtualThreads.threadFactory("bench-virtual-", true));
+        try {
+            run("virtual", requests);
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    private void run(String mode, ExecutorService requests) throws Exception {
+        // Warm up connections and JIT
+        measure(requests, 50);
+
+        System.out.println();
+        System.out.println("Thread mode: " + mode + ", upstream delay " + UPSTREAM_DELAY_MS + " ms");
+        System.out.printf("%12s %10s %10s %12s %14s%n", "concurrency", "p50 ms", "p99 ms", "req/s", "cheap req ms");
+
+        int sustainable = 0;
+        for (int concurrency : CONCURRENCY) {
+            Result result = measure(requests, concurrency);
+            System.out.printf("%12d %10d %10d %12.0f %14.1f%n", concurrency, result.p50Ms, result.p99Ms,
+                    result.throughput, result.cheapMs);
+            if (result.p99Ms <= 2L * UPSTREAM_DELAY_MS) {
+                sustainable = concurrency;
+            }
+        }
+        System.out.println("Max sustainable concurrency (p99 <= " + 2 * UPSTREAM_DELAY_MS + " ms): " + sustainable);
+    }
+
+    private Result measure(ExecutorService requests, int concurrency) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < concurrency; i++) {
+            long submitted = System.nanoTime();
+            calls.add(CompletableFuture.runAsync(() -> {
+                try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+                    response.body().string();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                latencies.add(System.nanoTime() - submitted);
+            }, requests));
+        }
+
+        // A request that does no upstream I/O, queued behind the blocking ones
+        long cheapSubmitted = System.nanoTime();
+        CompletableFuture<Long> cheap = CompletableFuture.supplyAsync(() -> System.nanoTime() - cheapSubmitted, requests);
+
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+        assertEquals(concurrency, latencies.size());
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Result(
+                TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.50)),
+                TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.99)),
+                concurrency / (elapsed / 1e9),
+                cheap.get() / 1e6);
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+
+    private static class Result {
+        final long p50Ms;
+        final long p99Ms;
+        final double throughput;
+        final double cheapMs;
+
+        Result(long p50Ms, long p99Ms, double throughput, double cheapMs) {
+            this.p50Ms = p50Ms;
+            this.p99Ms = p99Ms;
+            this.throughput = throughput;
+            this.cheapMs = cheapMs;
+        }
+    }
+}
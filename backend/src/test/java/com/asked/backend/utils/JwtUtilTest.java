@@ -0,0 +1,72 @@
+package com.asked.backend.utils;
+
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "maxCacheEntries", 100);
+    }
+
+    @Test
+    void testValidTokenReturnsUsernameAndIsCached() {
+        String token = jwtUtil.generateToken("alice");
+
+        assertEquals("alice", jwtUtil.validateAndGetUsername(token));
+        assertEquals("alice", jwtUtil.validateAndGetUsername(token));
+        assertEquals(1, verifiedTokens().size());
+    }
+
+    @Test
+    void testTamperedTokenIsRejected() {
+        String token = jwtUtil.generateToken("alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(jwtUtil.validateAndGetUsername(tampered));
+        assertNull(jwtUtil.validateAndGetUsername("not.a.jwt"));
+        assertTrue(verifiedTokens().isEmpty());
+    }
+
+    @Test
+    void testCachedTokenStopsWorkingAtExpiry() throws Exception {
+        SecretKey key = (SecretKey) ReflectionTestUtils.getField(JwtUtil.class, "SECRET_KEY");
+        // exp has one-second resolution
+        String token = Jwts.builder()
+                .setSubject("bob")
+                .setExpiration(new Date(System.currentTimeMillis() + 1000))
+                .signWith(key)
+                .compact();
+
+        assertEquals("bob", jwtUtil.validateAndGetUsername(token));
+        Thread.sleep(1100);
+        assertNull(jwtUtil.validateAndGetUsername(token));
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        ReflectionTestUtils.setField(jwtUtil, "maxCacheEntries", 2);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("user" + i, jwtUtil.validateAndGetUsername(jwtUtil.generateToken("user" + i)));
+        }
+        assertTrue(verifiedTokens().size() <= 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> verifiedTokens() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(jwtUtil, "verifiedTokens");
+    }
+}
@@ -18,11 +18,15 @@ const flipCardStyles = `
   }
 `;
 
+const SAVED_PAGE_SIZE = 100;
+
 const Flashcards = ({ initialContent = '', initialFilename = null }) => {
   const [filename, setFilename] = useState(initialFilename || '');
   const [textContent, setTextContent] = useState(initialContent);
   const [generatedFlashcards, setGeneratedFlashcards] = useState({}); // { sessionId: { cards: [], timestamp: Date, sessionId: string } }
   const [savedFlashcards, setSavedFlashcards] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [folders, setFolders] = useState([]);
   const [error, setError] = useState('');
   const [loading, setLoading] = useState(false);
@@ -67,20 +71,43 @@ const Flashcards = ({ initialContent = '', initialFilename = null }) => {
     };
   }, [getAuthToken]);
 
+  // Cards are listed a page at a time; further pages load on request
+  const fetchFlashcardsPage = useCallback(async (cursor) => {
+    const response = await axios.get(getApiUrl('/db/flashcards'), {
+      headers: getAuthHeaders(),
+      params: cursor ? { cursor, size: SAVED_PAGE_SIZE } : { size: SAVED_PAGE_SIZE }
+    });
+    setNextCursor(response.headers['x-next-cursor'] || null);
+    return response.data;
+  }, [getAuthHeaders]);
+
+  const showSavedFlashcards = useCallback((cards) => {
+    setSavedFlashcards(cards);
+    // Extract unique folders
+    const uniqueFolders = [...new Set(cards.map(card => card.folder).filter(Boolean))];
+    setFolders(uniqueFolders);
+  }, []);
+
   const loadSavedFlashcards = useCallback(async () => {
     try {
-      const response = await axios.get(getApiUrl('/db/flashcards'), {
-        headers: getAuthHeaders()
-      });
-      setSavedFlashcards(response.data);
-      
-      // Extract unique folders
-      const uniqueFolders = [...new Set(response.data.map(card => card.folder).filter(Boolean))];
-      setFolders(uniqueFolders);
+      showSavedFlashcards(await fetchFlashcardsPage(null));
     } catch (err) {
       console.error('Failed to load saved flashcards:', err);
     }
-  }, [getAuthHeaders]);
+  }, [fetchFlashcardsPage, showSavedFlashcards]);
+
+  const loadMoreFlashcards = async () => {
+    if (!nextCursor || loadingMore) return;
+    setLoadingMore(true);
+    try {
+      const page = await fetchFlashcardsPage(nextCursor);
+      showSavedFlashcards(savedFlashcards.concat(page));
+    } catch (err) {
+      console.error('Failed to load more flashcards:', err);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
 
   // Load user's saved flashcards and folders on component mount
   useEffect(() => {
@@ -842,6 +869,18 @@ const Flashcards = ({ initialContent = '', initialFilename = null }) => {
             })}
           </div>
         )}
+
+        {nextCursor && (
+          <div className="mt-6 text-center">
+            <button
+              onClick={loadMoreFlashcards}
+              disabled={loadingMore}
+              className="bg-blue-600 hover:bg-blue-700 disabled:opacity-50 text-white px-6 py-2 rounded-lg font-semibold transition-all duration-200"
+            >
+              {loadingMore ? 'Loading...' : 'Load more cards'}
+            </button>
+          </div>
+        )}
       </div>
     </div>
   );